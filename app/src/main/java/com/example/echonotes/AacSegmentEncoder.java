@@ -0,0 +1,241 @@
+package com.example.echonotes;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes captured PCM to AAC and writes it as a series of fixed-duration .m4a segments, the
+ * same files {@link SegmentedRecorder} would produce.
+ *
+ * One encoder runs for the whole session. Every AAC frame decodes on its own, so a segment ends
+ * by closing its muxer and the next frame starts a new one; the cut is exact to the frame and no
+ * audio is lost between segments. Segments are reported on the main thread.
+ *
+ * Every encoded frame is also offered to the {@link EncodedFrameSink}, if one is set.
+ */
+public class AacSegmentEncoder implements PcmConsumer {
+
+    private static final String TAG = "AacSegmentEncoder";
+    private static final long TIMEOUT_US = 10_000;
+    // A codec that hasn't produced end of stream by then isn't going to; keep what it did produce.
+    private static final long END_OF_STREAM_TIMEOUT_MS = 2_000;
+
+    /**
+     * Receives each encoded AAC frame, e.g. to stream it. Called on the dispatch thread; the buffer
+     * is only valid for the duration of the call.
+     */
+    public interface EncodedFrameSink {
+        void onEncodedFrame(ByteBuffer frame, MediaCodec.BufferInfo info);
+    }
+
+    private final File outputDir;
+    private final String sessionId;
+    private final long segmentDurationUs;
+    private final AudioProfile profile;
+    private final SegmentedRecorder.SegmentListener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+    private volatile EncodedFrameSink sink;
+    private int sampleRate;
+    private MediaCodec encoder;
+    private MediaFormat outputFormat;
+    private MediaMuxer muxer;
+    private int track;
+    private File currentSegment;
+    private int segmentIndex;
+    private long segmentStartUs;
+    private boolean failed;
+
+    public AacSegmentEncoder(File outputDir, String sessionId, long segmentDurationMs, AudioProfile profile,
+                             SegmentedRecorder.SegmentListener listener) {
+        this.outputDir = outputDir;
+        this.sessionId = sessionId;
+        this.segmentDurationUs = segmentDurationMs * 1000;
+        this.profile = profile;
+        this.listener = listener;
+    }
+
+    public void setSink(EncodedFrameSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void onStart(int sampleRate) throws IOException {
+        this.sampleRate = sampleRate;
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, 1);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, profile.bitRate);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, sampleRate * EnergyVad.FRAME_MS / 1000 * 2);
+
+        encoder = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+        encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        encoder.start();
+        segmentIndex = 0;
+        segmentStartUs = 0;
+        failed = false;
+    }
+
+    @Override
+    public void onPcm(short[] samples, int count, long position) {
+        if (failed) return;
+        try {
+            int offset = 0;
+            while (offset < count) {
+                int inputIndex = encoder.dequeueInputBuffer(TIMEOUT_US);
+                if (inputIndex < 0) {
+                    drain(false);
+                    continue;
+                }
+                ByteBuffer input = encoder.getInputBuffer(inputIndex);
+                input.clear();
+                input.order(ByteOrder.LITTLE_ENDIAN);
+                int n = Math.min(count - offset, input.remaining() / 2);
+                for (int i = 0; i < n; i++) {
+                    input.putShort(samples[offset + i]);
+                }
+                encoder.queueInputBuffer(inputIndex, 0, n * 2, timeUs(position + offset), 0);
+                offset += n;
+            }
+            drain(false);
+        } catch (IOException | IllegalStateException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the segment being written and reports it as the last, even after an encoding error;
+     * whatever reached it is still a playable file. If there is none the recording is reported
+     * as aborted instead.
+     */
+    @Override
+    public void onStop() {
+        if (encoder == null) return;
+        Exception error = null;
+        try {
+            if (!failed) {
+                int inputIndex = encoder.dequeueInputBuffer(TIMEOUT_US * 10);
+                if (inputIndex >= 0) {
+                    encoder.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    drain(true);
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Encoding failed at the end of the recording", e);
+            error = e;
+        }
+        try {
+            encoder.stop();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Encoder failed to stop", e);
+        }
+        encoder.release();
+        encoder = null;
+
+        File last = null;
+        try {
+            last = finishSegment();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Could not close the last segment", e);
+            muxer.release();
+            muxer = null;
+            currentSegment.delete();
+            error = e;
+        }
+        if (last != null) {
+            File finished = last;
+            int index = segmentIndex;
+            mainHandler.post(() -> listener.onSegmentFinished(finished, index, true));
+        } else {
+            Exception cause = error != null ? error : new IOException("No audio was captured");
+            mainHandler.post(() -> listener.onAborted(cause));
+        }
+    }
+
+    private void drain(boolean untilEndOfStream) throws IOException {
+        long deadline = SystemClock.elapsedRealtime() + END_OF_STREAM_TIMEOUT_MS;
+        while (true) {
+            int outputIndex = encoder.dequeueOutputBuffer(info, untilEndOfStream ? TIMEOUT_US : 0);
+            if (outputIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!untilEndOfStream) return;
+                if (SystemClock.elapsedRealtime() >= deadline) {
+                    Log.w(TAG, "Encoder never signalled end of stream, closing the segment without it");
+                    return;
+                }
+            } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                outputFormat = encoder.getOutputFormat();
+            } else if (outputIndex >= 0) {
+                boolean endOfStream = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                // The codec config is carried by the output format, not written as a sample.
+                if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                    write(encoder.getOutputBuffer(outputIndex));
+                }
+                encoder.releaseOutputBuffer(outputIndex, false);
+                if (endOfStream) return;
+            }
+        }
+    }
+
+    private void write(ByteBuffer frame) throws IOException {
+        if (muxer != null && info.presentationTimeUs >= segmentStartUs + segmentDurationUs) {
+            File finished = finishSegment();
+            int finishedIndex = segmentIndex;
+            segmentIndex++;
+            segmentStartUs += segmentDurationUs;
+            mainHandler.post(() -> listener.onSegmentFinished(finished, finishedIndex, false));
+        }
+        if (muxer == null) {
+            currentSegment = segmentFile(segmentIndex);
+            muxer = new MediaMuxer(currentSegment.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            track = muxer.addTrack(outputFormat);
+            muxer.start();
+        }
+
+        frame.position(info.offset);
+        frame.limit(info.offset + info.size);
+        EncodedFrameSink frameSink = sink;
+        if (frameSink != null) {
+            frameSink.onEncodedFrame(frame, info);
+            frame.position(info.offset);
+            frame.limit(info.offset + info.size);
+        }
+        long timeUs = info.presentationTimeUs;
+        info.presentationTimeUs = timeUs - segmentStartUs;
+        muxer.writeSampleData(track, frame, info);
+        info.presentationTimeUs = timeUs;
+    }
+
+    /** Closes the current segment, if one has any audio, and returns its file. */
+    private File finishSegment() {
+        if (muxer == null) return null;
+        muxer.stop();
+        muxer.release();
+        muxer = null;
+        return currentSegment;
+    }
+
+    private void fail(Exception e) {
+        Log.e(TAG, "Encoding failed", e);
+        failed = true;
+        mainHandler.post(() -> listener.onError(e));
+    }
+
+    private long timeUs(long samplePosition) {
+        return samplePosition * 1_000_000L / sampleRate;
+    }
+
+    private File segmentFile(int index) {
+        return SegmentedRecorder.segmentFile(outputDir, sessionId, index, profile);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.echonotes;
+
+import android.media.MediaRecorder;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recording encodings, speech profiles first, in the order the picker lists them. The sizes are for
+ * mono audio at the given bitrate; speech needs little more than 16 kHz, so the speech profiles
+ * trade nothing the transcriber would notice for files a fraction the size of high fidelity.
+ *
+ * <pre>
+ * profile        codec    rate    bitrate   ~MB/hour  notes
+ * SPEECH_OPUS    Opus     16 kHz  24 kbps   10.8      API 29+; recorder restarts, losing audio, at each segment
+ * SPEECH_AAC     AAC-LC   16 kHz  32 kbps   14.4      default; gapless, with waveform and live transcript
+ * LEGACY_AMR     AMR-NB    8 kHz  12.2 kbps  5.5      telephone band, weakest transcripts
+ * HIGH_FIDELITY  AAC-LC   48 kHz  128 kbps  57.6      music or archiving
+ * </pre>
+ */
+public enum AudioProfile {
+    SPEECH_OPUS("Speech (Opus, smallest)", MediaRecorder.OutputFormat.OGG, MediaRecorder.AudioEncoder.OPUS,
+            16_000, 24_000, ".ogg", "audio/ogg", Build.VERSION_CODES.Q),
+    SPEECH_AAC("Speech (AAC)", MediaRecorder.OutputFormat.MPEG_4, MediaRecorder.AudioEncoder.AAC,
+            16_000, 32_000, ".m4a", "audio/mp4", Build.VERSION_CODES.BASE),
+    LEGACY_AMR("Legacy (AMR, telephone quality)", MediaRecorder.OutputFormat.THREE_GPP, MediaRecorder.AudioEncoder.AMR_NB,
+            8_000, 12_200, ".3gp", "audio/3gpp", Build.VERSION_CODES.BASE),
+    HIGH_FIDELITY("High fidelity (AAC, largest)", MediaRecorder.OutputFormat.MPEG_4, MediaRecorder.AudioEncoder.AAC,
+            48_000, 128_000, ".m4a", "audio/mp4", Build.VERSION_CODES.BASE);
+
+    public final String label;
+    public final int outputFormat;
+    public final int audioEncoder;
+    public final int sampleRate;
+    public final int bitRate;
+    public final String extension;
+    public final String mimeType;
+    private final int minSdk;
+
+    AudioProfile(String label, int outputFormat, int audioEncoder, int sampleRate, int bitRate,
+                 String extension, String mimeType, int minSdk) {
+        this.label = label;
+        this.outputFormat = outputFormat;
+        this.audioEncoder = audioEncoder;
+        this.sampleRate = sampleRate;
+        this.bitRate = bitRate;
+        this.extension = extension;
+        this.mimeType = mimeType;
+        this.minSdk = minSdk;
+    }
+
+    public boolean isSupported() {
+        return Build.VERSION.SDK_INT >= minSdk;
+    }
+
+    /** Whether MediaRecorder can switch files without stopping when recording this container. */
+    public boolean supportsNextOutputFile() {
+        return outputFormat == MediaRecorder.OutputFormat.MPEG_4 || outputFormat == MediaRecorder.OutputFormat.THREE_GPP;
+    }
+
+    /** Whether {@link PcmSegmentedRecorder} can record this profile, with live levels. */
+    public boolean canEncodeFromPcm() {
+        return audioEncoder == MediaRecorder.AudioEncoder.AAC;
+    }
+
+    /** AAC, the speech profile that records through the PCM pipeline on every device. */
+    public static AudioProfile defaultForSpeech() {
+        return SPEECH_AAC;
+    }
+
+    public static List<AudioProfile> supported() {
+        List<AudioProfile> profiles = new ArrayList<>();
+        for (AudioProfile profile : values()) {
+            if (profile.isSupported()) profiles.add(profile);
+        }
+        return profiles;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.echonotes;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
+public class EchoNotesApplication extends Application implements Configuration.Provider {
+
+    // Runs the upload queue; its size tracks the network, see UploadExecutor.
+    private final UploadExecutor uploadExecutor = new UploadExecutor();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        uploadExecutor.watch(this);
+        RecordingJobManager.getInstance(this).recoverInterruptedSessions();
+    }
+
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder()
+                .setExecutor(uploadExecutor)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.echonotes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Energy-based voice activity detection over fixed 20 ms frames.
+ *
+ * A frame is silent when its level is below a threshold set 10 dB above the recording's own noise
+ * floor (its quietest tenth of frames), clamped so that a near-silent or a speech-only recording
+ * still gets a sensible cut-off. Only silences longer than {@code minSilenceMs} are cut, and
+ * {@code paddingMs} of each is kept either side so words aren't clipped.
+ */
+public class EnergyVad {
+
+    public static final int FRAME_MS = 20;
+
+    private static final float MIN_THRESHOLD_DB = -50f;
+    private static final float MAX_THRESHOLD_DB = -35f;
+    private static final float MARGIN_DB = 10f;
+
+    private final long minSilenceMs;
+    private final long paddingMs;
+
+    public EnergyVad(long minSilenceMs, long paddingMs) {
+        if (minSilenceMs <= 2 * paddingMs) {
+            throw new IllegalArgumentException("Silences must be longer than the padding kept around them");
+        }
+        this.minSilenceMs = minSilenceMs;
+        this.paddingMs = paddingMs;
+    }
+
+    /** Level of a run of 16-bit samples in dB relative to full scale. */
+    public static float levelDb(short[] samples, int offset, int count) {
+        if (count == 0) return -120f;
+        double sum = 0;
+        for (int i = offset; i < offset + count; i++) {
+            sum += (double) samples[i] * samples[i];
+        }
+        double rms = Math.sqrt(sum / count) / 32768.0;
+        return rms <= 0 ? -120f : (float) (20 * Math.log10(rms));
+    }
+
+    /**
+     * @param frameDb the level of each consecutive {@link #FRAME_MS} frame
+     * @return the spans to keep, as {@code [startMs, endMs)} pairs in order; empty if every frame is
+     *         silent
+     */
+    public List<long[]> keptSpans(float[] frameDb) {
+        int frames = frameDb.length;
+        long totalMs = (long) frames * FRAME_MS;
+        float threshold = threshold(frameDb);
+
+        List<long[]> kept = new ArrayList<>();
+        long keepStart = 0;
+        boolean voiced = false;
+        int i = 0;
+        while (i < frames) {
+            if (frameDb[i] >= threshold) {
+                voiced = true;
+                i++;
+                continue;
+            }
+            int j = i;
+            while (j < frames && frameDb[j] < threshold) j++;
+
+            long silenceStart = (long) i * FRAME_MS;
+            long silenceEnd = (long) j * FRAME_MS;
+            if (silenceEnd - silenceStart >= minSilenceMs) {
+                // Leading and trailing silences don't need padding on their outer side.
+                long cutStart = i == 0 ? 0 : silenceStart + paddingMs;
+                long cutEnd = j == frames ? totalMs : silenceEnd - paddingMs;
+                if (cutStart > keepStart) kept.add(new long[]{keepStart, cutStart});
+                keepStart = cutEnd;
+            }
+            i = j;
+        }
+        if (!voiced) return new ArrayList<>();
+        if (keepStart < totalMs) kept.add(new long[]{keepStart, totalMs});
+        return kept;
+    }
+
+    static float threshold(float[] frameDb) {
+        if (frameDb.length == 0) return MIN_THRESHOLD_DB;
+        float[] sorted = Arrays.copyOf(frameDb, frameDb.length);
+        Arrays.sort(sorted);
+        float noiseFloor = sorted[sorted.length / 10];
+        return Math.max(MIN_THRESHOLD_DB, Math.min(MAX_THRESHOLD_DB, noiseFloor + MARGIN_DB));
+    }
+}
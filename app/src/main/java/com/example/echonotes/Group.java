@@ -1,8 +1,12 @@
 package com.example.echonotes;
 
+import com.google.firebase.firestore.IgnoreExtraProperties;
+
 import java.io.Serializable;
 import java.util.Date;
 
+// Group documents also carry their search tokens, which the app never reads back.
+@IgnoreExtraProperties
 public class Group implements Serializable {
     private String groupId;
     private String groupName;
@@ -27,6 +31,19 @@ public class Group implements Serializable {
         this.unreadCount = 0;
     }
 
+    /** A copy to change without touching a list the adapter is diffing against. */
+    public Group(Group other) {
+        this.groupId = other.groupId;
+        this.groupName = other.groupName;
+        this.description = other.description;
+        this.createdBy = other.createdBy;
+        this.createdAt = other.createdAt;
+        this.lastMessage = other.lastMessage;
+        this.lastSender = other.lastSender;
+        this.lastMessageTime = other.lastMessageTime;
+        this.unreadCount = other.unreadCount;
+    }
+
     // Getters and setters
     public String getGroupId() {
         return groupId;
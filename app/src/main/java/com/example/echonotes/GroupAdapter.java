@@ -8,19 +8,43 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
-
-public class GroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+import java.util.Objects;
+
+/**
+ * Lists groups from {@link #submitList}; the diff against the previous list is worked out off the
+ * main thread, and only the rows that changed or moved are rebound. Submitted groups must not be
+ * changed afterwards; submit copies instead.
+ */
+public class GroupAdapter extends ListAdapter<Group, RecyclerView.ViewHolder> {
     private static final int VIEW_TYPE_MY_GROUP = 1;
     private static final int VIEW_TYPE_SEARCH_RESULT = 2;
 
-    private List<Group> groupList;
+    private static final DiffUtil.ItemCallback<Group> DIFF_CALLBACK = new DiffUtil.ItemCallback<Group>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Group oldItem, @NonNull Group newItem) {
+            return Objects.equals(oldItem.getGroupId(), newItem.getGroupId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Group oldItem, @NonNull Group newItem) {
+            // Only what the rows show.
+            return Objects.equals(oldItem.getGroupName(), newItem.getGroupName())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && Objects.equals(oldItem.getLastMessage(), newItem.getLastMessage())
+                    && Objects.equals(oldItem.getLastSender(), newItem.getLastSender())
+                    && Objects.equals(oldItem.getLastMessageTime(), newItem.getLastMessageTime())
+                    && oldItem.getUnreadCount() == newItem.getUnreadCount();
+        }
+    };
+
     private OnGroupClickListener listener;
     private OnGroupJoinListener joinListener;
     private SimpleDateFormat timeFormat;
@@ -29,8 +53,8 @@ public class GroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     private String currentUserId;
     private boolean isSearchMode = false;
 
-    public GroupAdapter(List<Group> groupList, OnGroupClickListener listener, OnGroupJoinListener joinListener) {
-        this.groupList = groupList;
+    public GroupAdapter(OnGroupClickListener listener, OnGroupJoinListener joinListener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
         this.joinListener = joinListener;
         this.timeFormat = new SimpleDateFormat("hh:mm a", Locale.getDefault());
@@ -61,7 +85,7 @@ public class GroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        Group group = groupList.get(position);
+        Group group = getItem(position);
 
         if (holder instanceof GroupViewHolder) {
             ((GroupViewHolder) holder).bind(group);
@@ -79,11 +103,6 @@ public class GroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return groupList.size();
-    }
-
     public interface OnGroupClickListener {
         void onGroupClick(Group group);
     }
@@ -110,7 +129,7 @@ public class GroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onGroupClick(groupList.get(position));
+                    listener.onGroupClick(getItem(position));
                 }
             });
         }
@@ -159,14 +178,14 @@ public class GroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             btnJoin.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && joinListener != null) {
-                    joinListener.onGroupJoin(groupList.get(position));
+                    joinListener.onGroupJoin(getItem(position));
                 }
             });
 
             btnView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onGroupClick(groupList.get(position));
+                    listener.onGroupClick(getItem(position));
                 }
             });
         }
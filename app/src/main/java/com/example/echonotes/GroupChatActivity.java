@@ -20,6 +20,8 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -132,11 +134,23 @@ public class GroupChatActivity extends AppCompatActivity {
                 });
     }
 
+    /**
+     * Records when the user last read the group, on the member doc and on the user's own group
+     * index; the group list counts unread messages from the latter.
+     */
     private void markMessagesAsRead() {
         if (currentUser != null) {
-            db.collection("groups").document(groupId)
-                    .collection("members").document(currentUser.getUid())
-                    .update("lastRead", new Date());
+            Date now = new Date();
+            Map<String, Object> lastRead = new HashMap<>();
+            lastRead.put("lastRead", now);
+
+            WriteBatch batch = db.batch();
+            batch.update(db.collection("groups").document(groupId)
+                    .collection("members").document(currentUser.getUid()), lastRead);
+            batch.set(db.collection("users").document(currentUser.getUid())
+                    .collection("groups").document(groupId), lastRead, SetOptions.merge());
+            batch.commit()
+                    .addOnFailureListener(e -> Log.e(TAG, "Error marking messages as read", e));
         }
     }
 
@@ -197,6 +211,15 @@ public class GroupChatActivity extends AppCompatActivity {
         progressBar.setVisibility(show ? View.VISIBLE : View.GONE);
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Whatever arrived while the chat was open has been seen, including the user's own messages.
+        if (!TextUtils.isEmpty(groupId)) {
+            markMessagesAsRead();
+        }
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         onBackPressed();
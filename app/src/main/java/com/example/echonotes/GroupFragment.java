@@ -3,6 +3,8 @@ package com.example.echonotes;
 import android.app.Dialog;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
@@ -26,19 +28,32 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClickListener, GroupAdapter.OnGroupJoinListener {
 
     private static final String TAG = "GroupFragment";
+    // How long typing has to pause before the search runs.
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    // Most groups one search reads from the server.
+    private static final int SEARCH_LIMIT = 50;
     private RecyclerView recyclerGroups;
     private FloatingActionButton fabAddGroup;
     private View progressBar;
@@ -48,10 +63,26 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
     private FirebaseFirestore db;
     private FirebaseUser currentUser;
     private GroupAdapter groupAdapter;
-    private List<Group> groupList;
-    private List<Group> allGroupsList;
     private boolean isSearchMode = false;
 
+    // The user's groups as the listeners last reported them; the list shown is built from these.
+    private final Map<String, Group> groupsById = new HashMap<>();
+    // When the user last read each group, mirrored onto the index so badges need no member reads.
+    private final Map<String, Date> lastReads = new HashMap<>();
+    private final Map<String, Integer> unreadCounts = new HashMap<>();
+    private ListenerRegistration indexRegistration;
+    // One listener per whereIn chunk of group ids, keyed by the chunk.
+    private final Map<List<String>, ListenerRegistration> chunkRegistrations = new HashMap<>();
+    private List<List<String>> chunks = new ArrayList<>();
+
+    // The user's own groups, for answering a search at once while the server is asked about the
+    // rest; kept up to date by the group listeners.
+    private GroupSearchIndex searchIndex = new GroupSearchIndex();
+    // Bumped by every search, so answers to ones since replaced are dropped.
+    private int searchGeneration = 0;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::searchGroups;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -61,22 +92,19 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
         initializeFirebase();
         setupRecyclerView();
 
-        // Load groups after setup is complete
-        loadGroups();
+        // The listeners keep the list current for as long as the view exists, so coming back to
+        // the tab costs no reads.
+        listenForGroups();
         setupListeners();
 
         return view;
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        // Reload groups every time fragment becomes visible
-        if (groupList != null && !isSearchMode) {
-            groupList.clear();
-            groupAdapter.notifyDataSetChanged();
-            loadGroups();
-        }
+    public void onDestroyView() {
+        super.onDestroyView();
+        searchHandler.removeCallbacks(searchRunnable);
+        stopListeningForGroups();
     }
 
     private void initializeViews(View view) {
@@ -93,9 +121,7 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
     }
 
     private void setupRecyclerView() {
-        groupList = new ArrayList<>();
-        allGroupsList = new ArrayList<>();
-        groupAdapter = new GroupAdapter(groupList, this, this);
+        groupAdapter = new GroupAdapter(this, this);
         recyclerGroups.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerGroups.setAdapter(groupAdapter);
     }
@@ -104,7 +130,10 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
         fabAddGroup.setOnClickListener(v -> showCreateGroupDialog());
 
         if (btnSearch != null) {
-            btnSearch.setOnClickListener(v -> searchGroups());
+            btnSearch.setOnClickListener(v -> {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchGroups();
+            });
         }
 
         if (etSearchGroups != null) {
@@ -117,55 +146,59 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
 
                 @Override
                 public void afterTextChanged(Editable s) {
+                    // Only the last of a burst of keystrokes searches.
+                    searchHandler.removeCallbacks(searchRunnable);
                     if (s.length() > 0) {
-                        searchGroups();
+                        searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
                     } else {
                         // If search field is cleared, show user's groups
-                        isSearchMode = false;
-                        loadGroups();
+                        showMyGroups();
                     }
                 }
             });
         }
     }
 
+    /**
+     * Searches for the text currently in the box: the user's own groups from the in-memory index
+     * straight away, then any group through one {@code array-contains} query on the groups' search
+     * tokens, so the cost follows the number of results rather than the number of groups.
+     */
     private void searchGroups() {
-        String query = etSearchGroups.getText().toString().trim().toLowerCase();
+        String query = etSearchGroups.getText().toString().trim();
 
         if (TextUtils.isEmpty(query)) {
             // If search is empty, show user's groups
-            isSearchMode = false;
-            loadGroups();
+            showMyGroups();
             return;
         }
 
         isSearchMode = true;
+        final int generation = ++searchGeneration;
+        List<Group> ownGroups = searchIndex.search(query);
+        groupAdapter.submitList(ownGroups);
+
+        String token = GroupSearchTokens.queryToken(query);
+        if (token == null) return;
         showProgressBar(true);
 
         db.collection("groups")
-                .orderBy("groupName")
+                .whereArrayContains(GroupSearchTokens.FIELD, token)
+                .limit(SEARCH_LIMIT)
                 .get()
                 .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Group> searchResults = new ArrayList<>();
+                    if (generation != searchGeneration) return;
+                    showProgressBar(false);
 
+                    Set<Group> results = new LinkedHashSet<>(ownGroups);
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
                         Group group = document.toObject(Group.class);
-                        String groupName = group.getGroupName().toLowerCase();
-                        String description = group.getDescription() != null ?
-                                group.getDescription().toLowerCase() : "";
-
-                        // Add to results if name or description contains the query
-                        if (groupName.contains(query) || description.contains(query)) {
-                            searchResults.add(group);
-                        }
+                        if (group.getGroupId() == null) group.setGroupId(document.getId());
+                        if (GroupSearchTokens.matches(group, query)) results.add(group);
                     }
-
-                    // Update the displayed list
-                    groupList.clear();
-                    groupList.addAll(searchResults);
-                    groupAdapter.notifyDataSetChanged();
-
-                    showProgressBar(false);
+                    List<Group> searchResults = new ArrayList<>(results);
+                    Collections.sort(searchResults, GroupSearchIndex.BY_NAME);
+                    groupAdapter.submitList(searchResults);
 
                     if (searchResults.isEmpty()) {
                         Toast.makeText(getContext(), "No groups found matching your search",
@@ -173,6 +206,7 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                     }
                 })
                 .addOnFailureListener(e -> {
+                    if (generation != searchGeneration) return;
                     showProgressBar(false);
                     Log.e(TAG, "Error searching groups", e);
                     Toast.makeText(getContext(), "Error searching: " + e.getMessage(),
@@ -229,6 +263,7 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
         groupData.put("lastMessageTime", currentDate);
         groupData.put("lastMessage", "Group created");
         groupData.put("lastSender", currentUser.getEmail());
+        groupData.put(GroupSearchTokens.FIELD, GroupSearchTokens.forGroup(groupName, groupDescription));
 
         // Create the group document
         db.collection("groups").document(groupId)
@@ -253,6 +288,7 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                                 Map<String, Object> userGroupData = new HashMap<>();
                                 userGroupData.put("groupId", groupId);
                                 userGroupData.put("joinedAt", currentDate);
+                                userGroupData.put("lastRead", currentDate);
 
                                 db.collection("users").document(currentUser.getUid())
                                         .collection("groups").document(groupId)
@@ -264,19 +300,8 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                                             // Create welcome message
                                             sendWelcomeMessage(groupId);
 
-                                            // IMPORTANT: Add the new group to the list immediately
-                                            Group newGroup = new Group(groupId, groupName, groupDescription, currentUser.getUid(), currentDate);
-                                            newGroup.setLastMessage("Group created");
-                                            newGroup.setLastSender(currentUser.getEmail());
-                                            newGroup.setLastMessageTime(currentDate);
-
-                                            groupList.add(0, newGroup); // Add to beginning of list
-                                            allGroupsList.add(0, newGroup);
-                                            groupAdapter.notifyItemInserted(0);
-
-                                            // Force a full reload of groups to ensure everything is in sync
-                                            isSearchMode = false;
-                                            loadGroups();
+                                            // The index listener picks the new group up from here.
+                                            showMyGroups();
                                         })
                                         .addOnFailureListener(e -> {
                                             showProgressBar(false);
@@ -321,128 +346,193 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                 });
     }
 
-    private void loadGroups() {
-        // Existing code...
+    /**
+     * Listens to the user's group index and, through whereIn chunks of it, to the groups
+     * themselves. Firestore sends only the documents that changed, and the list is rebuilt from
+     * them, so nothing is re-read just to redraw.
+     */
+    private void listenForGroups() {
         if (currentUser == null) {
             Toast.makeText(getContext(), "You must be logged in to view groups", Toast.LENGTH_SHORT).show();
             return;
         }
 
         showProgressBar(true);
-        Log.d(TAG, "Loading groups for user: " + currentUser.getUid());
-
-        // Clear existing groups to prevent duplicates
-        groupList.clear();
-        allGroupsList.clear();
-        groupAdapter.notifyDataSetChanged();
-
-        // Get all groups directly, not just through user's collection
-        db.collection("groups")
-                .orderBy("lastMessageTime", Query.Direction.DESCENDING)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    showProgressBar(false);
-
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        Log.d(TAG, "No groups found in database");
-                        Toast.makeText(getContext(), "No groups found", Toast.LENGTH_SHORT).show();
+        Log.d(TAG, "Listening to groups of user: " + currentUser.getUid());
+
+        // The user-side index lists exactly the groups this user is in, so the cost follows the
+        // user's own groups rather than every group there is.
+        indexRegistration = db.collection("users").document(currentUser.getUid())
+                .collection("groups")
+                .addSnapshotListener((value, error) -> {
+                    if (error != null) {
+                        showProgressBar(false);
+                        Log.e(TAG, "Error listening to the group index", error);
+                        Toast.makeText(getContext(), "Failed to load groups: " + error.getMessage(), Toast.LENGTH_SHORT).show();
                         return;
                     }
+                    if (value == null) return;
+
+                    for (DocumentChange change : value.getDocumentChanges()) {
+                        String groupId = change.getDocument().getId();
+                        if (change.getType() == DocumentChange.Type.REMOVED) {
+                            lastReads.remove(groupId);
+                            groupsById.remove(groupId);
+                            unreadCounts.remove(groupId);
+                            continue;
+                        }
+                        Date lastRead = change.getDocument().getDate("lastRead");
+                        if (lastRead == null) lastRead = change.getDocument().getDate("joinedAt");
+                        Date previous = lastReads.put(groupId, lastRead);
+                        Group group = groupsById.get(groupId);
+                        if (group != null && !Objects.equals(previous, lastRead)) {
+                            updateUnreadCount(group);
+                        }
+                    }
 
-                    Log.d(TAG, "Found " + queryDocumentSnapshots.size() + " groups in database");
+                    List<String> groupIds = new ArrayList<>();
+                    for (QueryDocumentSnapshot entry : value) {
+                        groupIds.add(entry.getId());
+                    }
+                    Log.d(TAG, "User is in " + groupIds.size() + " groups");
+                    listenToChunks(GroupQueries.rechunk(chunks, groupIds, GroupQueries.MAX_IN_VALUES));
 
-                    // For each group, check if the current user is a member
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        final Group group = document.toObject(Group.class);
-
-                        if (group != null && group.getGroupId() != null) {
-                            Log.d(TAG, "Processing group: " + group.getGroupName() + " (ID: " + group.getGroupId() + ")");
-
-                            // Check if current user is a member of this group
-                            db.collection("groups").document(group.getGroupId())
-                                    .collection("members").document(currentUser.getUid())
-                                    .get()
-                                    .addOnSuccessListener(memberDoc -> {
-                                        if (memberDoc.exists()) {
-                                            Log.d(TAG, "User is a member of group: " + group.getGroupName());
-
-                                            // Only add if not already in the list (prevent duplicates)
-                                            if (!groupList.contains(group)) {
-                                                groupList.add(group);
-                                                allGroupsList.add(group);
-                                                groupAdapter.notifyDataSetChanged();
-
-                                                // Get unread count for this group
-                                                updateUnreadCount(group);
-                                            }
-                                        } else {
-                                            Log.d(TAG, "User is NOT a member of group: " + group.getGroupName());
-                                        }
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e(TAG, "Error checking membership for group: " + group.getGroupId(), e);
-                                    });
+                    if (groupIds.isEmpty()) {
+                        showProgressBar(false);
+                        if (!value.getMetadata().isFromCache()) {
+                            Toast.makeText(getContext(), "No groups found", Toast.LENGTH_SHORT).show();
                         }
                     }
-                })
-                .addOnFailureListener(e -> {
-                    showProgressBar(false);
-                    Log.e(TAG, "Error loading groups", e);
-                    Toast.makeText(getContext(), "Failed to load groups: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    publishGroups();
                 });
     }
 
+    /** Moves the group listeners onto {@code newChunks}, leaving those for unchanged chunks running. */
+    private void listenToChunks(List<List<String>> newChunks) {
+        for (List<String> chunk : chunks) {
+            if (!newChunks.contains(chunk)) {
+                ListenerRegistration registration = chunkRegistrations.remove(chunk);
+                if (registration != null) registration.remove();
+            }
+        }
+        for (List<String> chunk : newChunks) {
+            if (chunkRegistrations.containsKey(chunk)) continue;
+            chunkRegistrations.put(chunk, db.collection("groups")
+                    .whereIn(FieldPath.documentId(), chunk)
+                    .addSnapshotListener((value, error) -> {
+                        if (error != null) {
+                            Log.e(TAG, "Error listening to groups", error);
+                            return;
+                        }
+                        if (value == null) return;
+                        showProgressBar(false);
+                        applyGroupChanges(value);
+                    }));
+        }
+        chunks = newChunks;
+    }
+
+    private void applyGroupChanges(QuerySnapshot value) {
+        for (DocumentChange change : value.getDocumentChanges()) {
+            String groupId = change.getDocument().getId();
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                // Listeners of chunks that were rearranged are removed before they can report this,
+                // so the group itself is gone.
+                groupsById.remove(groupId);
+                unreadCounts.remove(groupId);
+                searchIndex.remove(groupId);
+                continue;
+            }
+            if (!lastReads.containsKey(groupId)) continue;
+
+            Group group = change.getDocument().toObject(Group.class);
+            if (group.getGroupId() == null) group.setGroupId(groupId);
+            searchIndex.put(group);
+            Group previous = groupsById.put(groupId, group);
+            if (previous == null || !Objects.equals(previous.getLastMessageTime(), group.getLastMessageTime())) {
+                updateUnreadCount(group);
+            }
+        }
+        publishGroups();
+    }
+
+    private void stopListeningForGroups() {
+        if (indexRegistration != null) {
+            indexRegistration.remove();
+            indexRegistration = null;
+        }
+        for (ListenerRegistration registration : chunkRegistrations.values()) {
+            registration.remove();
+        }
+        chunkRegistrations.clear();
+        chunks = new ArrayList<>();
+        groupsById.clear();
+        lastReads.clear();
+        unreadCounts.clear();
+        // Nothing keeps it current without the listeners.
+        searchIndex = new GroupSearchIndex();
+    }
+
+    private void showMyGroups() {
+        isSearchMode = false;
+        // Any search still on its way is no longer wanted.
+        searchGeneration++;
+        showProgressBar(false);
+        publishGroups();
+    }
+
+    /** Hands the adapter a fresh, sorted copy of the user's groups; it animates only what changed. */
+    private void publishGroups() {
+        if (isSearchMode || groupAdapter == null) return;
+        List<Group> groups = new ArrayList<>(groupsById.size());
+        for (Group group : groupsById.values()) {
+            Group row = new Group(group);
+            Integer unread = unreadCounts.get(group.getGroupId());
+            row.setUnreadCount(unread != null ? unread : 0);
+            groups.add(row);
+        }
+        Collections.sort(groups, GroupQueries.BY_LAST_MESSAGE_TIME);
+        groupAdapter.submitList(groups);
+    }
+
+    /**
+     * Sets the group's badge from a count() aggregation, which the server answers without sending
+     * the messages. Groups with nothing newer than their last read aren't queried at all.
+     */
     private void updateUnreadCount(Group group) {
-        // Existing code...
         if (currentUser == null) return;
 
-        db.collection("groups").document(group.getGroupId())
-                .collection("members").document(currentUser.getUid())
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Date lastRead = documentSnapshot.getDate("lastRead");
-
-                        if (lastRead != null) {
-                            db.collection("groups").document(group.getGroupId())
-                                    .collection("messages")
-                                    .whereGreaterThan("timestamp", lastRead)
-                                    .get()
-                                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                                        int unreadCount = queryDocumentSnapshots.size();
-                                        int groupIndex = getGroupIndexById(group.getGroupId());
-
-                                        if (groupIndex != -1) {
-                                            groupList.get(groupIndex).setUnreadCount(unreadCount);
-                                            groupAdapter.notifyItemChanged(groupIndex);
-                                        }
-                                    });
-                        } else {
-                            // If lastRead is null, count all messages as unread
-                            db.collection("groups").document(group.getGroupId())
-                                    .collection("messages")
-                                    .get()
-                                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                                        int unreadCount = queryDocumentSnapshots.size();
-                                        int groupIndex = getGroupIndexById(group.getGroupId());
-
-                                        if (groupIndex != -1) {
-                                            groupList.get(groupIndex).setUnreadCount(unreadCount);
-                                            groupAdapter.notifyItemChanged(groupIndex);
-                                        }
-                                    });
-                        }
+        String groupId = group.getGroupId();
+        Date lastRead = lastReads.get(groupId);
+        Date lastMessageTime = group.getLastMessageTime();
+        if (lastRead != null && (lastMessageTime == null || !lastMessageTime.after(lastRead))) {
+            setUnreadCount(groupId, 0);
+            return;
+        }
+
+        Query unread = db.collection("groups").document(groupId).collection("messages");
+        if (lastRead != null) {
+            unread = unread.whereGreaterThan("timestamp", lastRead);
+        }
+        unread.count()
+                .get(AggregateSource.SERVER)
+                .addOnSuccessListener(snapshot -> {
+                    // A later change has asked again; its answer is the one to show.
+                    Group current = groupsById.get(groupId);
+                    if (current == null || !Objects.equals(lastRead, lastReads.get(groupId))
+                            || !Objects.equals(lastMessageTime, current.getLastMessageTime())) {
+                        return;
                     }
-                });
+                    setUnreadCount(groupId, (int) snapshot.getCount());
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Error counting unread messages in " + groupId, e));
     }
 
-    private int getGroupIndexById(String groupId) {
-        for (int i = 0; i < groupList.size(); i++) {
-            if (groupList.get(i).getGroupId().equals(groupId)) {
-                return i;
-            }
+    private void setUnreadCount(String groupId, int unreadCount) {
+        Integer previous = unreadCounts.put(groupId, unreadCount);
+        if (previous == null || previous != unreadCount) {
+            publishGroups();
         }
-        return -1;
     }
 
     private void showProgressBar(boolean show) {
@@ -553,10 +643,11 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                     }
 
                     // Add user as a member
+                    Date joinedAt = new Date();
                     Map<String, Object> memberData = new HashMap<>();
                     memberData.put("userId", currentUser.getUid());
                     memberData.put("email", currentUser.getEmail());
-                    memberData.put("joinedAt", new Date());
+                    memberData.put("joinedAt", joinedAt);
                     memberData.put("role", "member");
 
                     db.collection("groups").document(group.getGroupId())
@@ -566,7 +657,8 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                                 // Add group to user's groups
                                 Map<String, Object> userGroupData = new HashMap<>();
                                 userGroupData.put("groupId", group.getGroupId());
-                                userGroupData.put("joinedAt", new Date());
+                                userGroupData.put("joinedAt", joinedAt);
+                                userGroupData.put("lastRead", joinedAt);
 
                                 db.collection("users").document(currentUser.getUid())
                                         .collection("groups").document(group.getGroupId())
@@ -583,9 +675,8 @@ public class GroupFragment extends Fragment implements GroupAdapter.OnGroupClick
                                             // Open the group chat
                                             openGroupChat(group);
 
-                                            // Refresh the groups list
-                                            isSearchMode = false;
-                                            loadGroups();
+                                            // The index listener adds the group to the list.
+                                            showMyGroups();
                                         })
                                         .addOnFailureListener(e -> {
                                             showProgressBar(false);
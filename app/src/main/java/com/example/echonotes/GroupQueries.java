@@ -0,0 +1,57 @@
+package com.example.echonotes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Helpers for reading a user's groups in batches instead of one document at a time. */
+public final class GroupQueries {
+
+    /** Most values Firestore accepts in one {@code whereIn}. */
+    public static final int MAX_IN_VALUES = 30;
+
+    /** Most recently active first; groups that never had a message go last. */
+    public static final Comparator<Group> BY_LAST_MESSAGE_TIME = (a, b) -> {
+        Date left = a.getLastMessageTime();
+        Date right = b.getLastMessageTime();
+        if (left == null || right == null) {
+            return left == right ? 0 : left == null ? 1 : -1;
+        }
+        return right.compareTo(left);
+    };
+
+    private GroupQueries() {
+    }
+
+    /** Splits {@code values} into runs of at most {@code size}, in order. */
+    public static <T> List<List<T>> chunks(List<T> values, int size) {
+        if (size <= 0) throw new IllegalArgumentException("size must be positive: " + size);
+        List<List<T>> chunks = new ArrayList<>((values.size() + size - 1) / size);
+        for (int from = 0; from < values.size(); from += size) {
+            chunks.add(new ArrayList<>(values.subList(from, Math.min(from + size, values.size()))));
+        }
+        return chunks;
+    }
+
+    /**
+     * Re-splits {@code ids} after the set changed, keeping every chunk of {@code current} whose ids
+     * are all still there so queries already running for it can stay. Ids from broken chunks and
+     * new ids are packed into new chunks of at most {@code size}.
+     */
+    public static List<List<String>> rechunk(List<List<String>> current, Collection<String> ids, int size) {
+        Set<String> remaining = new LinkedHashSet<>(ids);
+        List<List<String>> chunks = new ArrayList<>();
+        for (List<String> chunk : current) {
+            if (remaining.containsAll(chunk)) {
+                chunks.add(chunk);
+                remaining.removeAll(chunk);
+            }
+        }
+        chunks.addAll(chunks(new ArrayList<>(remaining), size));
+        return chunks;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.echonotes;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+
+/**
+ * Writes {@link GroupSearchTokens} onto group documents created before groups carried them, or
+ * whose name or description changed since. Pages through the collection in document id order and
+ * only writes documents whose tokens are missing or stale, so it can be run again safely. A
+ * maintenance tool, reached from the debug build's drawer.
+ */
+public class GroupSearchBackfill {
+
+    private static final String TAG = "GroupSearchBackfill";
+    // Well under the 500 writes a batch allows.
+    private static final int PAGE_SIZE = 200;
+
+    /** Called on the main thread. */
+    public interface Listener {
+        void onFinished(int scanned, int updated);
+
+        void onError(Exception e);
+    }
+
+    private final FirebaseFirestore db;
+    private final Listener listener;
+    private int scanned = 0;
+    private int updated = 0;
+
+    public GroupSearchBackfill(FirebaseFirestore db, Listener listener) {
+        this.db = db;
+        this.listener = listener;
+    }
+
+    public void run() {
+        page(null);
+    }
+
+    private void page(DocumentSnapshot after) {
+        Query query = db.collection("groups")
+                .orderBy(FieldPath.documentId())
+                .limit(PAGE_SIZE);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+        query.get()
+                .addOnSuccessListener(snapshots -> {
+                    List<DocumentSnapshot> documents = snapshots.getDocuments();
+                    WriteBatch batch = db.batch();
+                    int writes = 0;
+                    for (DocumentSnapshot document : documents) {
+                        List<String> tokens = GroupSearchTokens.forGroup(
+                                document.getString("groupName"), document.getString("description"));
+                        if (!tokens.equals(document.get(GroupSearchTokens.FIELD))) {
+                            batch.update(document.getReference(), GroupSearchTokens.FIELD, tokens);
+                            writes++;
+                        }
+                    }
+                    scanned += documents.size();
+                    updated += writes;
+                    Log.d(TAG, "Scanned " + scanned + " groups, updated " + updated);
+
+                    boolean last = documents.size() < PAGE_SIZE;
+                    DocumentSnapshot next = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+                    if (writes == 0) {
+                        continuePaging(last, next);
+                        return;
+                    }
+                    batch.commit()
+                            .addOnSuccessListener(aVoid -> continuePaging(last, next))
+                            .addOnFailureListener(this::fail);
+                })
+                .addOnFailureListener(this::fail);
+    }
+
+    private void continuePaging(boolean last, DocumentSnapshot next) {
+        if (last) {
+            listener.onFinished(scanned, updated);
+        } else {
+            page(next);
+        }
+    }
+
+    private void fail(Exception e) {
+        Log.e(TAG, "Backfill stopped after " + scanned + " groups", e);
+        listener.onError(e);
+    }
+}
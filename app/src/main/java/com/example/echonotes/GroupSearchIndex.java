@@ -0,0 +1,89 @@
+package com.example.echonotes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index over group names and descriptions, so a search is answered without going back
+ * to Firestore.
+ *
+ * Matching follows the same rule as the server-side search: each group is indexed under its
+ * {@link GroupSearchTokens}, a query looks up its longest word, and a group matches when every
+ * word of the query starts one of its words. Groups can be added, changed and removed one at a
+ * time. Not thread-safe.
+ */
+public class GroupSearchIndex {
+
+    /** By name, ignoring case. */
+    static final Comparator<Group> BY_NAME = (a, b) ->
+            normalize(a.getGroupName()).compareTo(normalize(b.getGroupName()));
+
+    private final Map<String, Group> groups = new HashMap<>();
+    // What each group is indexed under, to take it out again when it changes.
+    private final Map<String, List<String>> tokens = new HashMap<>();
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    /** Adds a group, or re-indexes it if its name or description changed. */
+    public void put(Group group) {
+        String groupId = group.getGroupId();
+        if (groupId == null) return;
+        List<String> groupTokens = GroupSearchTokens.forGroup(group.getGroupName(), group.getDescription());
+        groups.put(groupId, group);
+        List<String> previous = tokens.put(groupId, groupTokens);
+        if (groupTokens.equals(previous)) return;
+
+        if (previous != null) unindex(groupId, previous);
+        for (String token : groupTokens) {
+            Set<String> ids = postings.get(token);
+            if (ids == null) {
+                ids = new HashSet<>();
+                postings.put(token, ids);
+            }
+            ids.add(groupId);
+        }
+    }
+
+    public void remove(String groupId) {
+        List<String> groupTokens = tokens.remove(groupId);
+        groups.remove(groupId);
+        if (groupTokens != null) unindex(groupId, groupTokens);
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    /** Groups where every word of {@code query} starts a word of the name or description, by name. */
+    public List<Group> search(String query) {
+        String token = GroupSearchTokens.queryToken(query);
+        Set<String> candidates = token == null ? null : postings.get(token);
+        if (candidates == null) return Collections.emptyList();
+
+        List<Group> results = new ArrayList<>();
+        for (String groupId : candidates) {
+            Group group = groups.get(groupId);
+            if (GroupSearchTokens.matches(group, query)) results.add(group);
+        }
+        Collections.sort(results, BY_NAME);
+        return results;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void unindex(String groupId, List<String> groupTokens) {
+        for (String token : groupTokens) {
+            Set<String> ids = postings.get(token);
+            ids.remove(groupId);
+            if (ids.isEmpty()) postings.remove(token);
+        }
+    }
+}
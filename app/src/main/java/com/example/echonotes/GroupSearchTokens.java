@@ -0,0 +1,77 @@
+package com.example.echonotes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The search tokens stored on each group document, so Firestore can answer a search with one
+ * {@code array-contains} query instead of the client scanning every group.
+ *
+ * A group's tokens are the prefixes, up to {@link #MAX_PREFIX} characters, of every word in its
+ * name and description. A search queries its longest word and then keeps the groups where every
+ * word of the query starts some word of the group.
+ */
+public final class GroupSearchTokens {
+
+    /** The indexed array field on group documents. */
+    public static final String FIELD = "searchTokens";
+
+    static final int MAX_PREFIX = 15;
+    // Keeps a long description from blowing up the document's index entries; name tokens come first.
+    static final int MAX_TOKENS = 400;
+
+    private GroupSearchTokens() {
+    }
+
+    public static List<String> forGroup(String groupName, String description) {
+        Set<String> tokens = new LinkedHashSet<>();
+        List<String> words = words(groupName);
+        words.addAll(words(description));
+        for (String word : words) {
+            for (int length = 1; length <= Math.min(word.length(), MAX_PREFIX); length++) {
+                if (tokens.size() == MAX_TOKENS) return new ArrayList<>(tokens);
+                tokens.add(word.substring(0, length));
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /** The token to look up for {@code query}: its longest word, cut to a stored prefix; or null. */
+    public static String queryToken(String query) {
+        String longest = null;
+        for (String word : words(query)) {
+            if (longest == null || word.length() > longest.length()) longest = word;
+        }
+        if (longest == null) return null;
+        return longest.length() > MAX_PREFIX ? longest.substring(0, MAX_PREFIX) : longest;
+    }
+
+    /** Whether every word of {@code query} starts a word of the group's name or description. */
+    public static boolean matches(Group group, String query) {
+        List<String> words = words(group.getGroupName());
+        words.addAll(words(group.getDescription()));
+        for (String queryWord : words(query)) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+}
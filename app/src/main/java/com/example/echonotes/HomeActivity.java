@@ -5,6 +5,7 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.GravityCompat;
@@ -50,7 +51,13 @@ public class HomeActivity extends AppCompatActivity {
 
         profileIcon.setOnClickListener(view -> drawerLayout.openDrawer(GravityCompat.START));
 
+        navigationView.getMenu().findItem(R.id.nav_backfill_search).setVisible(BuildConfig.DEBUG);
         navigationView.setNavigationItemSelectedListener(item -> {
+            if (item.getItemId() == R.id.nav_backfill_search) {
+                drawerLayout.closeDrawer(GravityCompat.START);
+                backfillGroupSearchTokens();
+                return true;
+            }
             if (item.getItemId() == R.id.nav_logout) {
                 auth.signOut();
                 Intent intent = new Intent(HomeActivity.this, LoginActivity.class);
@@ -69,6 +76,23 @@ public class HomeActivity extends AppCompatActivity {
         tabLayout.setupWithViewPager(viewPager);
     }
 
+    /** Adds search tokens to groups created before they had them; debug builds only. */
+    private void backfillGroupSearchTokens() {
+        Toast.makeText(this, "Backfilling group search tokens...", Toast.LENGTH_SHORT).show();
+        new GroupSearchBackfill(db, new GroupSearchBackfill.Listener() {
+            @Override
+            public void onFinished(int scanned, int updated) {
+                Toast.makeText(HomeActivity.this, "Updated " + updated + " of " + scanned + " groups",
+                        Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(HomeActivity.this, "Backfill failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        }).run();
+    }
+
     private void fetchUserName(String email) {
         db.collection("users")
                 .whereEqualTo("email", email)
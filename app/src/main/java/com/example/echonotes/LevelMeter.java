@@ -0,0 +1,52 @@
+package com.example.echonotes;
+
+/**
+ * Keeps the level of the most recent frames for the live waveform. Levels are written on the
+ * capture engine's dispatch thread and copied out on the UI thread; a reader racing the writer
+ * can at worst see one bar from the next frame, which is harmless for a display.
+ */
+public class LevelMeter implements PcmConsumer {
+
+    public static final float FLOOR_DB = -60f;
+
+    private final float[] history;
+    private volatile long written = 0;
+
+    public LevelMeter(int historySize) {
+        history = new float[historySize];
+    }
+
+    @Override
+    public void onStart(int sampleRate) {
+        written = 0;
+    }
+
+    @Override
+    public void onPcm(short[] samples, int count, long position) {
+        float db = Math.max(FLOOR_DB, EnergyVad.levelDb(samples, 0, count));
+        history[(int) (written % history.length)] = db;
+        written++;
+    }
+
+    @Override
+    public void onStop() {
+    }
+
+    public int capacity() {
+        return history.length;
+    }
+
+    /**
+     * Copies the most recent levels, oldest first, into {@code into}.
+     *
+     * @return how many were copied
+     */
+    public int copyLevels(float[] into) {
+        long end = written;
+        int count = (int) Math.min(Math.min(end, history.length), into.length);
+        for (int i = 0; i < count; i++) {
+            into[i] = history[(int) ((end - count + i) % history.length)];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.echonotes;
+
+import android.media.MediaCodec;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams a recording's AAC frames over a WebSocket while it is being recorded and reports the
+ * partial transcript the server sends back.
+ *
+ * Protocol, on {@code {liveUrl}/{session_id}}:
+ * <ul>
+ *   <li>client: {@code {"type":"start","session_id":..,"codec":"aac","sample_rate":..,"channels":1}}</li>
+ *   <li>server: {@code {"type":"ready","next_frame":n}}, the first frame it hasn't got yet</li>
+ *   <li>client: binary messages, an 8-byte big-endian frame index followed by one ADTS AAC frame</li>
+ *   <li>server: {@code {"type":"utterance","index":i,"speaker":..,"text":..,"start":ms,"end":ms,"final":b}};
+ *       a later utterance with the same index replaces the earlier one</li>
+ *   <li>client: {@code {"type":"end"}} after the last frame; the server flushes and closes</li>
+ * </ul>
+ * A dropped connection is reopened with backoff, and the server's {@code next_frame} tells the
+ * client where to resume. The last {@link #BACKLOG_FRAMES} frames are kept for that; a server
+ * that fell further behind skips ahead to the oldest one kept. After {@link #finish()} only
+ * {@link #MAX_RETRIES_AFTER_END} more connections are tried.
+ */
+public class LiveTranscriptionClient implements AacSegmentEncoder.EncodedFrameSink {
+
+    private static final String TAG = "LiveTranscription";
+    // About a minute of 16 kHz AAC (1024 samples a frame).
+    static final int BACKLOG_FRAMES = 1024;
+    // Comfortably above the largest mono AAC-LC frame, plus its ADTS header.
+    private static final int MAX_FRAME_BYTES = 2048;
+    private static final int READ_TIMEOUT_MS = 60_000;
+    private static final long MIN_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long END_TIMEOUT_MS = 30_000;
+    // Once recording has stopped nothing new is coming; the batch upload has the whole session anyway.
+    private static final int MAX_RETRIES_AFTER_END = 3;
+
+    private static final int[] ADTS_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+
+    /** Called on the client's own threads. */
+    public interface Listener {
+        void onUtterance(int index, Utterance utterance, boolean isFinal);
+
+        void onConnectionChanged(boolean connected);
+    }
+
+    private final String url;
+    private final String sessionId;
+    private final int sampleRate;
+    private final Listener listener;
+    private final int adtsRateIndex;
+
+    // Guards everything below; the sending thread waits on it for new frames.
+    private final Object lock = new Object();
+    private final byte[][] frames = new byte[BACKLOG_FRAMES][MAX_FRAME_BYTES];
+    private final int[] frameLengths = new int[BACKLOG_FRAMES];
+    private long framesWritten = 0;
+    private boolean ended = false;
+    private boolean cancelled = false;
+    private WebSocketConnection connection;
+
+    private Thread thread;
+
+    public LiveTranscriptionClient(String liveUrl, String sessionId, int sampleRate, Listener listener) {
+        this.url = liveUrl.endsWith("/") ? liveUrl + sessionId : liveUrl + "/" + sessionId;
+        this.sessionId = sessionId;
+        this.sampleRate = sampleRate;
+        this.listener = listener;
+        this.adtsRateIndex = adtsRateIndex(sampleRate);
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "live-transcription");
+        thread.start();
+    }
+
+    /** Sends what's left, then ends the stream; returns without waiting for it. */
+    public void finish() {
+        synchronized (lock) {
+            ended = true;
+            lock.notifyAll();
+        }
+    }
+
+    /** Drops the connection and anything unsent. */
+    public void cancel() {
+        WebSocketConnection open;
+        synchronized (lock) {
+            cancelled = true;
+            open = connection;
+            lock.notifyAll();
+        }
+        closeQuietly(open);
+        if (thread != null) thread.interrupt();
+    }
+
+    @Override
+    public void onEncodedFrame(ByteBuffer frame, MediaCodec.BufferInfo info) {
+        append(frame);
+    }
+
+    /** Queues one raw AAC frame, from its position to its limit, for sending. */
+    void append(ByteBuffer frame) {
+        int length = frame.remaining() + 7;
+        synchronized (lock) {
+            if (ended || cancelled) return;
+            if (length > MAX_FRAME_BYTES) {
+                Log.w(TAG, "Skipping oversized frame of " + length + " bytes");
+                return;
+            }
+            int slot = (int) (framesWritten % BACKLOG_FRAMES);
+            byte[] target = frames[slot];
+            writeAdtsHeader(target, length);
+            frame.get(target, 7, length - 7);
+            frameLengths[slot] = length;
+            framesWritten++;
+            lock.notifyAll();
+        }
+    }
+
+    private void run() {
+        long backoffMs = MIN_BACKOFF_MS;
+        int failuresAfterEnd = 0;
+        byte[] message = new byte[8 + MAX_FRAME_BYTES];
+        while (true) {
+            WebSocketConnection open = null;
+            Thread receiver = null;
+            AtomicBoolean alive = new AtomicBoolean(true);
+            try {
+                open = WebSocketConnection.connect(url, READ_TIMEOUT_MS);
+                synchronized (lock) {
+                    if (cancelled) return;
+                    connection = open;
+                }
+                open.sendText(startMessage().toString());
+                WebSocketConnection.Message ready = open.receive();
+                if (ready == null || ready.text == null) throw new IOException("No ready message");
+                JSONObject readyJson = new JSONObject(ready.text);
+                if (!"ready".equals(readyJson.optString("type"))) throw new IOException("Unexpected " + ready.text);
+                long next = readyJson.getLong("next_frame");
+
+                listener.onConnectionChanged(true);
+                backoffMs = MIN_BACKOFF_MS;
+                WebSocketConnection receiving = open;
+                receiver = new Thread(() -> receive(receiving, alive), "live-transcription-receive");
+                receiver.start();
+
+                sendFrom(open, next, message, alive);
+                open.sendText("{\"type\":\"end\"}");
+                // The server sends the last utterances, then closes.
+                receiver.join(END_TIMEOUT_MS);
+                return;
+            } catch (IOException | JSONException e) {
+                synchronized (lock) {
+                    if (cancelled) return;
+                    if (ended && ++failuresAfterEnd > MAX_RETRIES_AFTER_END) {
+                        Log.w(TAG, "Giving up on the rest of the live stream for " + sessionId, e);
+                        return;
+                    }
+                }
+                Log.w(TAG, "Live connection lost, retrying in " + backoffMs + " ms", e);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                alive.set(false);
+                closeQuietly(open);
+                synchronized (lock) {
+                    if (connection == open) connection = null;
+                }
+            }
+            listener.onConnectionChanged(false);
+
+            try {
+                synchronized (lock) {
+                    if (cancelled) return;
+                    lock.wait(backoffMs);
+                    if (cancelled) return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /** Sends frames from {@code next} on, returning once the stream has ended and all are sent. */
+    private void sendFrom(WebSocketConnection open, long next, byte[] message, AtomicBoolean alive)
+            throws IOException, InterruptedException {
+        long index = next;
+        while (true) {
+            int length;
+            synchronized (lock) {
+                while (index >= framesWritten && !ended && !cancelled && alive.get()) {
+                    lock.wait(1_000);
+                }
+                if (cancelled) throw new InterruptedException();
+                if (!alive.get()) throw new IOException("Connection closed by server");
+                if (index >= framesWritten) return;
+
+                long oldest = Math.max(0, framesWritten - BACKLOG_FRAMES);
+                if (index < oldest) {
+                    Log.w(TAG, "Frames " + index + " to " + oldest + " are gone, skipping ahead");
+                    index = oldest;
+                }
+                int slot = (int) (index % BACKLOG_FRAMES);
+                length = frameLengths[slot];
+                System.arraycopy(frames[slot], 0, message, 8, length);
+            }
+            for (int i = 0; i < 8; i++) {
+                message[i] = (byte) (index >>> (56 - 8 * i));
+            }
+            open.sendBinary(message, 0, 8 + length);
+            index++;
+        }
+    }
+
+    private void receive(WebSocketConnection open, AtomicBoolean alive) {
+        try {
+            WebSocketConnection.Message message;
+            while ((message = open.receive()) != null) {
+                if (message.text == null) continue;
+                JSONObject json = new JSONObject(message.text);
+                if (!"utterance".equals(json.optString("type"))) continue;
+                Utterance utterance = new Utterance(json.optString("speaker", "A"), json.getString("text"),
+                        json.optLong("start", -1), json.optLong("end", -1));
+                listener.onUtterance(json.getInt("index"), utterance, json.optBoolean("final"));
+            }
+        } catch (IOException | JSONException e) {
+            if (alive.get()) Log.w(TAG, "Live receive failed", e);
+        } finally {
+            alive.set(false);
+            closeQuietly(open);
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private JSONObject startMessage() throws JSONException {
+        JSONObject start = new JSONObject();
+        start.put("type", "start");
+        start.put("session_id", sessionId);
+        start.put("codec", "aac");
+        start.put("sample_rate", sampleRate);
+        start.put("channels", 1);
+        return start;
+    }
+
+    /** ADTS header for one AAC-LC mono frame of {@code length} bytes including the header. */
+    private void writeAdtsHeader(byte[] target, int length) {
+        int profile = 1; // AAC LC, minus one
+        int channels = 1;
+        target[0] = (byte) 0xFF;
+        target[1] = (byte) 0xF1;
+        target[2] = (byte) ((profile << 6) | (adtsRateIndex << 2) | (channels >> 2));
+        target[3] = (byte) (((channels & 3) << 6) | (length >> 11));
+        target[4] = (byte) ((length >> 3) & 0xFF);
+        target[5] = (byte) (((length & 7) << 5) | 0x1F);
+        target[6] = (byte) 0xFC;
+    }
+
+    private static int adtsRateIndex(int sampleRate) {
+        for (int i = 0; i < ADTS_SAMPLE_RATES.length; i++) {
+            if (ADTS_SAMPLE_RATES[i] == sampleRate) return i;
+        }
+        throw new IllegalArgumentException("No ADTS index for " + sampleRate + " Hz");
+    }
+
+    private static void closeQuietly(WebSocketConnection open) {
+        if (open == null) return;
+        try {
+            open.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.echonotes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a multipart/form-data body straight to the connection.
+ *
+ * The exact Content-Length is known before anything is sent, so the connection can run in
+ * fixed-length streaming mode and the platform never buffers the request body. File parts are
+ * copied through one fixed buffer, which keeps memory flat however large the recording is.
+ */
+public class MultipartUploader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.UTF_8);
+
+    public interface ProgressListener {
+        void onProgress(long bytesSent, long totalBytes);
+    }
+
+    private final String boundary;
+    private final List<Part> parts = new ArrayList<>();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public MultipartUploader() {
+        this("----" + System.currentTimeMillis());
+    }
+
+    public MultipartUploader(String boundary) {
+        this.boundary = boundary;
+    }
+
+    public String getContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    public MultipartUploader addFilePart(String name, File file, String mimeType) {
+        String header = "Content-Disposition: form-data; name=\"" + name + "\"; filename=\""
+                + file.getName() + "\"\r\n"
+                + "Content-Type: " + mimeType + "\r\n\r\n";
+        parts.add(new Part(partHeader(header), file, null));
+        return this;
+    }
+
+    public MultipartUploader addFormField(String name, String value) {
+        String header = "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n";
+        parts.add(new Part(partHeader(header), null, value.getBytes(StandardCharsets.UTF_8)));
+        return this;
+    }
+
+    public long getContentLength() {
+        long length = 0;
+        for (Part part : parts) {
+            length += part.header.length + part.bodyLength() + CRLF.length;
+        }
+        return length + closingBoundary().length;
+    }
+
+    /**
+     * Prepares {@code connection} for a fixed-length POST of this body. Must be called before
+     * the connection is opened.
+     */
+    public void configure(HttpURLConnection connection) throws IOException {
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Content-Type", getContentType());
+        connection.setFixedLengthStreamingMode(getContentLength());
+    }
+
+    public void writeTo(OutputStream out, ProgressListener listener) throws IOException {
+        long total = getContentLength();
+        long sent = 0;
+
+        for (Part part : parts) {
+            out.write(part.header);
+            sent += part.header.length;
+
+            if (part.file != null) {
+                try (FileInputStream in = new FileInputStream(part.file)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        sent += read;
+                        if (listener != null) listener.onProgress(sent, total);
+                    }
+                }
+            } else {
+                out.write(part.value);
+                sent += part.value.length;
+            }
+
+            out.write(CRLF);
+            sent += CRLF.length;
+        }
+
+        byte[] closing = closingBoundary();
+        out.write(closing);
+        sent += closing.length;
+        out.flush();
+
+        if (listener != null) listener.onProgress(sent, total);
+    }
+
+    private byte[] partHeader(String headers) {
+        return ("--" + boundary + "\r\n" + headers).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] closingBoundary() {
+        return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Part {
+        final byte[] header;
+        final File file;
+        final byte[] value;
+
+        Part(byte[] header, File file, byte[] value) {
+            this.header = header;
+            this.file = file;
+            this.value = value;
+        }
+
+        long bodyLength() {
+            return file != null ? file.length() : value.length;
+        }
+    }
+}
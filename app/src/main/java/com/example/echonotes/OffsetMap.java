@@ -0,0 +1,139 @@
+package com.example.echonotes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps times in trimmed audio back to the recording it was cut from. The trimmed audio is the
+ * kept spans of the original laid end to end; each span is stored as where it starts in both.
+ */
+public class OffsetMap {
+
+    private final long[] trimmedStarts;
+    private final long[] originalStarts;
+    private final long[] lengths;
+
+    private OffsetMap(long[] trimmedStarts, long[] originalStarts, long[] lengths) {
+        this.trimmedStarts = trimmedStarts;
+        this.originalStarts = originalStarts;
+        this.lengths = lengths;
+    }
+
+    /** @param spans kept {@code [startMs, endMs)} pairs over the original, in order */
+    public static OffsetMap fromKeptSpans(List<long[]> spans) {
+        int n = spans.size();
+        long[] trimmedStarts = new long[n];
+        long[] originalStarts = new long[n];
+        long[] lengths = new long[n];
+        long trimmed = 0;
+        for (int i = 0; i < n; i++) {
+            long[] span = spans.get(i);
+            trimmedStarts[i] = trimmed;
+            originalStarts[i] = span[0];
+            lengths[i] = span[1] - span[0];
+            trimmed += lengths[i];
+        }
+        return new OffsetMap(trimmedStarts, originalStarts, lengths);
+    }
+
+    /** Audio that was left as it is. */
+    public static OffsetMap identity(long durationMs) {
+        return new OffsetMap(new long[]{0}, new long[]{0}, new long[]{durationMs});
+    }
+
+    public long trimmedDurationMs() {
+        int last = lengths.length - 1;
+        return last < 0 ? 0 : trimmedStarts[last] + lengths[last];
+    }
+
+    public long toOriginal(long trimmedMs) {
+        if (lengths.length == 0) return trimmedMs;
+        int span = spanAt(trimmedMs);
+        return originalStarts[span] + (trimmedMs - trimmedStarts[span]);
+    }
+
+    /** @return the time in the trimmed audio, or -1 if {@code originalMs} fell in a cut span */
+    public long toTrimmed(long originalMs) {
+        for (int i = 0; i < lengths.length; i++) {
+            if (originalMs < originalStarts[i]) return -1;
+            if (originalMs < originalStarts[i] + lengths[i]) {
+                return trimmedStarts[i] + (originalMs - originalStarts[i]);
+            }
+        }
+        return -1;
+    }
+
+    /** Rewrites utterance timings from the trimmed timeline to the original one. */
+    public List<Utterance> toOriginal(List<Utterance> utterances) {
+        List<Utterance> mapped = new ArrayList<>(utterances.size());
+        for (Utterance utterance : utterances) {
+            long start = utterance.getStartMs() < 0 ? -1 : toOriginal(utterance.getStartMs());
+            long end = utterance.getEndMs() < 0 ? -1 : toOriginal(utterance.getEndMs());
+            mapped.add(new Utterance(utterance.getSpeaker(), utterance.getText(), start, end));
+        }
+        return mapped;
+    }
+
+    /**
+     * Joins the map of the audio that follows this one, as segments are joined on the server.
+     *
+     * @param originalOffsetMs where {@code next}'s original audio starts in the combined original
+     */
+    public OffsetMap append(OffsetMap next, long originalOffsetMs) {
+        int n = lengths.length;
+        int m = next.lengths.length;
+        long[] trimmed = new long[n + m];
+        long[] original = new long[n + m];
+        long[] length = new long[n + m];
+        System.arraycopy(trimmedStarts, 0, trimmed, 0, n);
+        System.arraycopy(originalStarts, 0, original, 0, n);
+        System.arraycopy(lengths, 0, length, 0, n);
+
+        long trimmedOffset = trimmedDurationMs();
+        for (int i = 0; i < m; i++) {
+            trimmed[n + i] = trimmedOffset + next.trimmedStarts[i];
+            original[n + i] = originalOffsetMs + next.originalStarts[i];
+            length[n + i] = next.lengths[i];
+        }
+        return new OffsetMap(trimmed, original, length);
+    }
+
+    /** Compact {@code trimmed:original:length} triples separated by semicolons. */
+    public String encode() {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < lengths.length; i++) {
+            if (i > 0) out.append(';');
+            out.append(trimmedStarts[i]).append(':').append(originalStarts[i]).append(':').append(lengths[i]);
+        }
+        return out.toString();
+    }
+
+    public static OffsetMap decode(String encoded) {
+        String[] spans = encoded.isEmpty() ? new String[0] : encoded.split(";");
+        long[] trimmed = new long[spans.length];
+        long[] original = new long[spans.length];
+        long[] length = new long[spans.length];
+        for (int i = 0; i < spans.length; i++) {
+            String[] parts = spans[i].split(":");
+            trimmed[i] = Long.parseLong(parts[0]);
+            original[i] = Long.parseLong(parts[1]);
+            length[i] = Long.parseLong(parts[2]);
+        }
+        return new OffsetMap(trimmed, original, length);
+    }
+
+    /** The last span starting at or before {@code trimmedMs}; times past the end stay in the last. */
+    private int spanAt(long trimmedMs) {
+        int low = 0;
+        int high = trimmedStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (trimmedStarts[mid] <= trimmedMs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.echonotes;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Captures microphone audio with {@link AudioRecord} and hands it to {@link PcmConsumer}s.
+ *
+ * A capture thread only reads from the microphone into a {@link PcmRingBuffer}; a second thread
+ * drains the buffer into the consumers in order. A slow consumer therefore costs dropped frames
+ * (logged at the end) instead of an overrun in the audio driver. Neither thread allocates once
+ * capture has started.
+ */
+public class PcmCaptureEngine {
+
+    private static final String TAG = "PcmCaptureEngine";
+    private static final int FRAME_MS = EnergyVad.FRAME_MS;
+    // One second of frames between the microphone and the consumers.
+    private static final int BUFFERED_FRAMES = 1000 / FRAME_MS;
+    private static final long AWAIT_NANOS = 50_000_000L;
+
+    public interface ErrorListener {
+        void onError(Exception e);
+    }
+
+    private final int sampleRate;
+    private final PcmConsumer[] consumers;
+    private final ErrorListener errorListener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private AudioRecord audioRecord;
+    private PcmRingBuffer ring;
+    private Thread captureThread;
+    private Thread dispatchThread;
+    private volatile boolean running;
+
+    /** Consumers are called in the order given, all on the dispatch thread. */
+    public PcmCaptureEngine(int sampleRate, ErrorListener errorListener, PcmConsumer... consumers) {
+        this.sampleRate = sampleRate;
+        this.errorListener = errorListener;
+        this.consumers = consumers;
+    }
+
+    // Callers hold RECORD_AUDIO before starting a recording.
+    @SuppressLint("MissingPermission")
+    public void start() throws IOException {
+        int frameSamples = sampleRate * FRAME_MS / 1000;
+        int minBuffer = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        if (minBuffer <= 0) throw new IOException("Unsupported capture rate " + sampleRate);
+
+        audioRecord = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                Math.max(minBuffer, 4 * frameSamples * 2));
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            audioRecord.release();
+            audioRecord = null;
+            throw new IOException("Microphone unavailable");
+        }
+        ring = new PcmRingBuffer(BUFFERED_FRAMES, frameSamples);
+
+        int started = 0;
+        try {
+            for (; started < consumers.length; started++) {
+                consumers[started].onStart(sampleRate);
+            }
+            audioRecord.startRecording();
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < started; i++) consumers[i].onStop();
+            audioRecord.release();
+            audioRecord = null;
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        running = true;
+        AudioRecord record = audioRecord;
+        captureThread = new Thread(() -> capture(record), "pcm-capture");
+        dispatchThread = new Thread(this::dispatch, "pcm-dispatch");
+        dispatchThread.start();
+        captureThread.start();
+    }
+
+    /**
+     * Stops the microphone without blocking the caller. The consumers finish the audio already
+     * captured on a background thread; {@code onStopped}, if given, runs on the main thread once
+     * they have and the microphone is released.
+     */
+    public void stop(Runnable onStopped) {
+        if (audioRecord == null) return;
+        running = false;
+        AudioRecord record = audioRecord;
+        audioRecord = null;
+        Thread capture = captureThread;
+        Thread dispatch = dispatchThread;
+        PcmRingBuffer buffer = ring;
+
+        new Thread(() -> {
+            joinQuietly(capture);
+            joinQuietly(dispatch);
+            record.stop();
+            record.release();
+
+            if (buffer.dropped() > 0) {
+                Log.w(TAG, "Dropped " + buffer.dropped() + " frames behind slow consumers");
+            }
+            if (onStopped != null) mainHandler.post(onStopped);
+        }, "pcm-stop").start();
+    }
+
+    private void capture(AudioRecord record) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        int frameSamples = ring.frameSamples();
+        long position = 0;
+        while (running) {
+            short[] slot = ring.writeSlot();
+            int read = record.read(slot, 0, frameSamples);
+            if (read < 0) {
+                Log.e(TAG, "AudioRecord read failed: " + read);
+                running = false;
+                errorListener.onError(new IOException("AudioRecord read failed: " + read));
+                break;
+            }
+            if (read > 0) {
+                ring.publish(read, position);
+                position += read;
+            }
+        }
+    }
+
+    private void dispatch() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        try {
+            // Drain what was captured before stop() so the last segment keeps its tail.
+            while (running || !ring.isEmpty()) {
+                if (!ring.await(AWAIT_NANOS)) continue;
+                short[] samples = ring.readSlot();
+                int count = ring.readCount();
+                long position = ring.readPosition();
+                for (PcmConsumer consumer : consumers) {
+                    consumer.onPcm(samples, count, position);
+                }
+                ring.release();
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "PCM consumer failed", e);
+            running = false;
+            errorListener.onError(e);
+        } finally {
+            for (PcmConsumer consumer : consumers) {
+                consumer.onStop();
+            }
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
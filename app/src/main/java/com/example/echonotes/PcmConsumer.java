@@ -0,0 +1,22 @@
+package com.example.echonotes;
+
+import java.io.IOException;
+
+/**
+ * Receives the audio captured by {@link PcmCaptureEngine}: 16-bit mono PCM, one frame at a time,
+ * on the engine's dispatch thread. Implementations must not allocate or block in {@link #onPcm},
+ * since a slow consumer holds up every consumer after it.
+ */
+public interface PcmConsumer {
+
+    void onStart(int sampleRate) throws IOException;
+
+    /**
+     * @param samples  the frame; only valid for the duration of the call
+     * @param position sample position of {@code samples[0]} in the recording
+     */
+    void onPcm(short[] samples, int count, long position);
+
+    /** Called once after the last frame, also when capture failed. */
+    void onStop();
+}
@@ -0,0 +1,104 @@
+package com.example.echonotes;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-size queue of PCM frames between one writer thread and one reader thread. Every frame
+ * array is allocated up front and reused, so moving audio through it allocates nothing.
+ *
+ * The writer fills {@link #writeSlot()} in place and then publishes it. When the reader has
+ * fallen a whole buffer behind, the writer is handed a spare array instead and that frame is
+ * dropped rather than overwriting one the reader may still be using.
+ */
+public class PcmRingBuffer {
+
+    private final short[][] frames;
+    private final int[] counts;
+    private final long[] positions;
+    private final short[] overflow;
+
+    private volatile long writeIndex = 0;
+    private volatile long readIndex = 0;
+    private volatile long dropped = 0;
+    private volatile Thread reader;
+    private boolean writingOverflow;
+
+    public PcmRingBuffer(int capacity, int frameSamples) {
+        frames = new short[capacity][frameSamples];
+        counts = new int[capacity];
+        positions = new long[capacity];
+        overflow = new short[frameSamples];
+    }
+
+    public int frameSamples() {
+        return overflow.length;
+    }
+
+    /** The array the writer should fill next; pass the number of samples it wrote to {@link #publish}. */
+    public short[] writeSlot() {
+        writingOverflow = writeIndex - readIndex >= frames.length;
+        return writingOverflow ? overflow : frames[slot(writeIndex)];
+    }
+
+    /**
+     * @param position sample position of the frame's first sample in the recording
+     * @return false if the frame was dropped because the reader is a full buffer behind
+     */
+    public boolean publish(int count, long position) {
+        if (writingOverflow) {
+            dropped++;
+            return false;
+        }
+        int slot = slot(writeIndex);
+        counts[slot] = count;
+        positions[slot] = position;
+        writeIndex++;
+
+        Thread waiting = reader;
+        if (waiting != null) LockSupport.unpark(waiting);
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return readIndex == writeIndex;
+    }
+
+    /** Waits up to {@code timeoutNanos} for a frame. Only the reader thread may call this. */
+    public boolean await(long timeoutNanos) {
+        if (!isEmpty()) return true;
+        reader = Thread.currentThread();
+        try {
+            if (isEmpty()) LockSupport.parkNanos(this, timeoutNanos);
+        } finally {
+            reader = null;
+        }
+        return !isEmpty();
+    }
+
+    /** The oldest unread frame; valid until {@link #release()}. */
+    public short[] readSlot() {
+        return frames[slot(readIndex)];
+    }
+
+    public int readCount() {
+        return counts[slot(readIndex)];
+    }
+
+    public long readPosition() {
+        return positions[slot(readIndex)];
+    }
+
+    /** Hands the oldest frame back to the writer. */
+    public void release() {
+        readIndex++;
+    }
+
+    /** Frames the writer had to throw away since the buffer was created. */
+    public long dropped() {
+        return dropped;
+    }
+
+    private int slot(long index) {
+        return (int) (index % frames.length);
+    }
+}
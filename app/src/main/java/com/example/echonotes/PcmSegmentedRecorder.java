@@ -0,0 +1,64 @@
+package com.example.echonotes;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Segmented recording on top of {@link PcmCaptureEngine}: the same segments as
+ * {@link SegmentedRecorder}, plus live levels for the waveform and access to the encoded audio.
+ * Only AAC profiles can be encoded this way.
+ */
+public class PcmSegmentedRecorder implements SessionRecorder {
+
+    // About four seconds of 20 ms levels.
+    private static final int LEVEL_HISTORY = 200;
+
+    private final PcmCaptureEngine engine;
+    private final AacSegmentEncoder encoder;
+    private final LevelMeter levelMeter = new LevelMeter(LEVEL_HISTORY);
+
+    public PcmSegmentedRecorder(File outputDir, String sessionId, long segmentDurationMs, AudioProfile profile,
+                                SegmentedRecorder.SegmentListener listener) {
+        if (!profile.canEncodeFromPcm()) {
+            throw new IllegalArgumentException(profile.name() + " can't be encoded from PCM");
+        }
+        encoder = new AacSegmentEncoder(outputDir, sessionId, segmentDurationMs, profile, listener);
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        engine = new PcmCaptureEngine(profile.sampleRate, e -> mainHandler.post(() -> listener.onError(e)),
+                levelMeter, encoder);
+    }
+
+    public LevelMeter getLevelMeter() {
+        return levelMeter;
+    }
+
+    /** Hook for streaming the encoded audio while it is recorded. */
+    public void setEncodedFrameSink(AacSegmentEncoder.EncodedFrameSink sink) {
+        encoder.setSink(sink);
+    }
+
+    @Override
+    public void start() throws IOException {
+        engine.start();
+    }
+
+    /** Returns straight away; the last segment is reported once the encoder has drained. */
+    @Override
+    public void stop() {
+        engine.stop(null);
+    }
+
+    /** Like {@link #stop()}, running {@code onStopped} on the main thread after the last frame is encoded. */
+    public void stop(Runnable onStopped) {
+        engine.stop(onStopped);
+    }
+
+    /** The encoder always closes its last segment, so this reports it like {@link #stop()}. */
+    @Override
+    public void release() {
+        engine.stop(null);
+    }
+}
@@ -1,87 +1,175 @@
 package com.example.echonotes;
 
 import android.Manifest;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.content.res.ColorStateList;
-import android.media.MediaRecorder;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.widget.SwitchCompat;
 import androidx.cardview.widget.CardView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class RecordFragment extends Fragment {
 
     private LinearLayout summaryContainer;
-    private LinearLayout transcriptContainer;
+    private RecyclerView transcriptList;
+    private TranscriptAdapter transcriptAdapter;
+    private ProgressBar transcriptProgress;
+    private Button downloadTranscriptButton;
     private Button recordButton;
+    private SwitchCompat trimSilenceSwitch;
+    private SwitchCompat liveTranscriptionSwitch;
+    private Spinner audioProfileSpinner;
     private TextView timerTextView;
-    private boolean isRecording = false;
+    private WaveformView waveformView;
+
+    // Does the recording itself, so it carries on while this screen is stopped.
+    private RecordingService recordingService;
 
-    private MediaRecorder mediaRecorder;
-    private File audioFile;
-    private String clientId;
+    private RecordingJobManager jobManager;
+    private RecyclerView jobList;
+    private RecordingJobAdapter jobAdapter;
+    private String selectedSessionId;
+    // What the summary/transcript views currently show, so progress ticks don't redraw them.
+    private String shownSessionId;
+    private String shownState;
+    private TranscriptResult shownResult;
+    private List<Utterance> shownPartial;
 
     private Handler timerHandler = new Handler();
-    private int seconds = 0;
 
     private Runnable timerRunnable = () -> {
+        int seconds = (int) ((SystemClock.elapsedRealtime() - recordingService.getStartedAtMs()) / 1000);
         int minutes = seconds / 60;
         int secs = seconds % 60;
         timerTextView.setText(String.format(Locale.getDefault(), "%02d:%02d", minutes, secs));
-        seconds++;
         timerHandler.postDelayed(this.timerRunnable, 1000);
     };
 
-    private static final String SERVER_URL = "https://transcript-api-bouw.onrender.com/upload";
-    private static final String TRANSCRIPT_URL = "https://transcript-api-bouw.onrender.com/transcript/";
-    private static final int POLL_INTERVAL = 5000;
-    private Handler pollHandler = new Handler(Looper.getMainLooper());t
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            recordingService = ((RecordingService.LocalBinder) binder).getService();
+            recordingService.addListener(recordingListener);
+            showRecordingState();
+            if (selectedSessionId != null && selectedSessionId.equals(recordingService.getLiveSessionId())) {
+                RecordingJob job = findJob(selectedSessionId);
+                if (job != null) showJob(job);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            recordingService = null;
+        }
+    };
+
+    private final RecordingService.Listener recordingListener = new RecordingService.Listener() {
+        @Override
+        public void onRecordingChanged(boolean recording) {
+            showRecordingState();
+        }
+
+        @Override
+        public void onLiveUtterance(String sessionId, int index, Utterance utterance) {
+            if (sessionId.equals(selectedSessionId) && !TranscriptStore.JOB_DONE.equals(shownState) && shownPartial == null) {
+                transcriptAdapter.updateUtterances(recordingService.getLiveUtterances());
+            }
+        }
+
+        @Override
+        public void onRecordingError(String message) {
+            Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
+        }
+    };
+
 
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_record, container, false);
         summaryContainer =view.findViewById(R.id.summary_container);
-        transcriptContainer = view.findViewById(R.id.transcript_container);
+        transcriptList = view.findViewById(R.id.transcript_list);
+        transcriptProgress = view.findViewById(R.id.transcript_progress);
+        downloadTranscriptButton = view.findViewById(R.id.download_transcript);
         recordButton = view.findViewById(R.id.start_recording);
+        trimSilenceSwitch = view.findViewById(R.id.trim_silence);
+        liveTranscriptionSwitch = view.findViewById(R.id.live_transcription);
+        audioProfileSpinner = view.findViewById(R.id.audio_profile);
         timerTextView = view.findViewById(R.id.timer_view);
+        waveformView = view.findViewById(R.id.waveform);
+        jobList = view.findViewById(R.id.job_list);
+
+        transcriptAdapter = new TranscriptAdapter(requireContext());
+        transcriptList.setLayoutManager(new LinearLayoutManager(getContext()));
+        transcriptList.setAdapter(transcriptAdapter);
+        downloadTranscriptButton.setOnClickListener(v -> saveTranscript());
+
+        List<AudioProfile> profiles = AudioProfile.supported();
+        ArrayAdapter<AudioProfile> profileAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, profiles);
+        profileAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        audioProfileSpinner.setAdapter(profileAdapter);
+        audioProfileSpinner.setSelection(profiles.indexOf(AudioProfile.defaultForSpeech()));
+
+        jobManager = RecordingJobManager.getInstance(requireContext());
+        jobAdapter = new RecordingJobAdapter(requireContext(), this::selectJob);
+        jobList.setLayoutManager(new LinearLayoutManager(getContext()));
+        jobList.setAdapter(jobAdapter);
+        jobAdapter.setJobs(jobManager.getJobs());
+        jobManager.addListener(jobListener);
+        jobManager.restore();
+        if (selectedSessionId == null && jobAdapter.getItemCount() > 0) {
+            selectJob(jobManager.getJobs().get(0));
+        }
 
         recordButton.setOnClickListener(v -> {
-            if (!isRecording) {
+            if (recordingService == null) return;
+            if (!recordingService.isRecording()) {
                 if (ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
-                    ActivityCompat.requestPermissions(requireActivity(), new String[]{Manifest.permission.RECORD_AUDIO}, 200);
+                    // The recording notification needs its own permission from Android 13 on.
+                    String[] permissions = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                            ? new String[]{Manifest.permission.RECORD_AUDIO, Manifest.permission.POST_NOTIFICATIONS}
+                            : new String[]{Manifest.permission.RECORD_AUDIO};
+                    ActivityCompat.requestPermissions(requireActivity(), permissions, 200);
                 } else {
                     startRecording();
                 }
@@ -94,332 +182,172 @@ public class RecordFragment extends Fragment {
     }
 
     private void startRecording() {
-        isRecording = true;
-        recordButton.setText("Stop Recording");
-        seconds = 0;
-        timerHandler.post(timerRunnable);
-
+        if (recordingService == null) return;
         File outputDir = new File(requireContext().getExternalFilesDir(Environment.DIRECTORY_MUSIC), "EchoNotes");
         if (!outputDir.exists()) outputDir.mkdirs();
 
-        String fileName = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        audioFile = new File(outputDir, "audio_" + fileName + ".3gp");
-
-        mediaRecorder = new MediaRecorder();
-        mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-        mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
-        mediaRecorder.setOutputFile(audioFile.getAbsolutePath());
-        mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-        mediaRecorder.setAudioEncodingBitRate(96000);
-        mediaRecorder.setAudioSamplingRate(44100);
-
-        try {
-            mediaRecorder.prepare();
-            mediaRecorder.start();
-            Log.d("DEBUG", "Recording started");
-        } catch (IOException e) {
-            e.printStackTrace();
+        String sessionId = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        AudioProfile profile = (AudioProfile) audioProfileSpinner.getSelectedItem();
+        if (liveTranscriptionSwitch.isChecked() && !profile.canEncodeFromPcm()) {
+            Toast.makeText(getContext(), "Live transcripts need an AAC profile", Toast.LENGTH_SHORT).show();
+        }
+        RecordingJob job = recordingService.startRecording(outputDir, sessionId, profile,
+                trimSilenceSwitch.isChecked(), liveTranscriptionSwitch.isChecked());
+        if (job == null) {
             Toast.makeText(getContext(), "Recording failed", Toast.LENGTH_SHORT).show();
+            return;
         }
+        Log.d("DEBUG", "Recording started");
+        selectJob(job);
     }
 
     private void stopRecording() {
-        isRecording = false;
-        recordButton.setText("Start Recording");
-        timerHandler.removeCallbacks(timerRunnable);
-
-        try {
-            mediaRecorder.stop();
-            mediaRecorder.release();
-            mediaRecorder = null;
-
+        if (recordingService.stopRecording()) {
             Toast.makeText(getContext(), "Recording finished!", Toast.LENGTH_SHORT).show();
-
-            uploadRecording();
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(getContext(), "Recording error", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void uploadRecording() {
-        new Thread(() -> {
-            HttpURLConnection connection = null;
-            try {
-                if (audioFile == null || !audioFile.exists()) {
-                    Log.e("UPLOAD", "Audio file doesn't exist");
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Audio file not found", Toast.LENGTH_SHORT).show();
-                    });
-                    return;
-                }
-
-                String boundary = "----" + System.currentTimeMillis();
-
-                URL url = new URL(SERVER_URL);
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setDoOutput(true);
-                connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-                connection.setRequestProperty("Connection", "Keep-Alive");
-                connection.setUseCaches(false);
-
-                java.io.DataOutputStream outputStream = new java.io.DataOutputStream(connection.getOutputStream());
-
-                outputStream.writeBytes("--" + boundary + "\r\n");
-                outputStream.writeBytes("Content-Disposition: form-data; name=\"file\"; filename=\"" +
-                        audioFile.getName() + "\"\r\n");
-                outputStream.writeBytes("Content-Type: audio/3gpp\r\n\r\n");
-
-                FileInputStream fileInputStream = new FileInputStream(audioFile);
-                int bytesAvailable = fileInputStream.available();
-                int maxBufferSize = 1024 * 1024;
-                int bufferSize = Math.min(bytesAvailable, maxBufferSize);
-                byte[] buffer = new byte[bufferSize];
-
-                int bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-                while (bytesRead > 0) {
-                    outputStream.write(buffer, 0, bytesRead);
-                    bytesAvailable = fileInputStream.available();
-                    bufferSize = Math.min(bytesAvailable, maxBufferSize);
-                    bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-                }
-
-                outputStream.writeBytes("\r\n--" + boundary + "\r\n");
-                outputStream.writeBytes("Content-Disposition: form-data; name=\"metadata\"\r\n\r\n");
-                outputStream.writeBytes("{\"timestamp\":\"" + System.currentTimeMillis() + "\"}\r\n");
-                outputStream.writeBytes("--" + boundary + "--\r\n");
-
-                fileInputStream.close();
-                outputStream.flush();
-                outputStream.close();
-
-                int responseCode = connection.getResponseCode();
-                Log.d("UPLOAD", "Server responded with: " + responseCode);
-
-                if (responseCode == 200) {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    String inputLine;
-                    StringBuilder response = new StringBuilder();
-                    while ((inputLine = in.readLine()) != null) {
-                        response.append(inputLine);
-                    }
-                    in.close();
-
-                    try {
-                        JSONObject jsonResponse = new JSONObject(response.toString());
-                        clientId = jsonResponse.getString("client_id");
-                        Log.d("UPLOAD", "Client ID: " + clientId);
-
-                        requireActivity().runOnUiThread(() -> {
-                            Toast.makeText(getContext(), "Audio uploaded successfully", Toast.LENGTH_SHORT).show();
-                        });
-
-                        startPollingForTranscript();
-                        startPollingForSummary();
-
-                    } catch (JSONException e) {
-                        Log.e("UPLOAD", "Failed to parse response", e);
-                    }
-                } else {
-                    requireActivity().runOnUiThread(() -> {
-                        Toast.makeText(getContext(), "Upload failed: " + responseCode, Toast.LENGTH_SHORT).show();
-                    });
-                }
-            } catch (Exception e) {
-                Log.e("UPLOAD", "Failed to upload audio file", e);
-                requireActivity().runOnUiThread(() -> {
-                    Toast.makeText(getContext(), "Upload error: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                });
-            } finally {
-                if (connection != null) {
-                    connection.disconnect();
-                }
-            }
-        }).start();
-    }
-    private void startPollingForSummary() {
-        if (clientId == null || clientId.isEmpty()) {
-            Log.e("SUMMARY", "No client ID available");
-            return;
+    /** Matches the button, timer and waveform to the service, e.g. after coming back to the screen. */
+    private void showRecordingState() {
+        boolean recording = recordingService != null && recordingService.isRecording();
+        recordButton.setText(recording ? "Stop Recording" : "Start Recording");
+        audioProfileSpinner.setEnabled(!recording);
+        timerHandler.removeCallbacks(timerRunnable);
+        if (recording) {
+            timerHandler.post(timerRunnable);
         }
-
-        requireActivity().runOnUiThread(() -> {
-            summaryContainer.removeAllViews();
-
-            ProgressBar progressBar = new ProgressBar(getContext(), null, android.R.attr.progressBarStyleLarge);
-            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.WRAP_CONTENT,
-                    LinearLayout.LayoutParams.WRAP_CONTENT
-            );
-            params.setMargins(0, 50, 0, 0);
-            params.gravity = android.view.Gravity.CENTER;
-            progressBar.setLayoutParams(params);
-            progressBar.setIndeterminate(true);
-            progressBar.setIndeterminateTintList(
-                    ColorStateList.valueOf(ContextCompat.getColor(requireContext(), android.R.color.black))
-            );
-            summaryContainer.addView(progressBar);
-        });
-
-        pollForTranscript(); // polling transcript gives both transcript & summary
+        LevelMeter meter = recording ? recordingService.getLevelMeter() : null;
+        waveformView.setMeter(meter);
+        waveformView.setVisibility(meter != null ? View.VISIBLE : View.GONE);
     }
 
-    private void startPollingForTranscript() {
-        if (clientId == null || clientId.isEmpty()) {
-            Log.e("TRANSCRIPT", "No client ID available");
-            return;
+    @Nullable
+    private RecordingJob findJob(String sessionId) {
+        for (RecordingJob job : jobManager.getJobs()) {
+            if (job.getSessionId().equals(sessionId)) return job;
         }
+        return null;
+    }
 
-        requireActivity().runOnUiThread(() -> {
-            transcriptContainer.removeAllViews();
-
-            ProgressBar progressBar = new ProgressBar(getContext(), null, android.R.attr.progressBarStyleLarge);
-            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.WRAP_CONTENT,
-                    LinearLayout.LayoutParams.WRAP_CONTENT
-            );
-            params.setMargins(0, 50, 0, 0);
-            params.gravity = android.view.Gravity.CENTER;
-            progressBar.setLayoutParams(params);
-            progressBar.setIndeterminate(true);
-            progressBar.setIndeterminateTintList(
-                    ColorStateList.valueOf(ContextCompat.getColor(requireContext(), android.R.color.black))
-            );
-            transcriptContainer.addView(progressBar);
-        });
+    private final RecordingJobManager.Listener jobListener = job -> {
+        if (TranscriptStore.JOB_FAILED.equals(job.getState()) && !jobManager.getJobs().contains(job)) {
+            jobAdapter.removeJob(job);
+        } else {
+            jobAdapter.updateJob(job);
+        }
+        if (selectedSessionId == null) {
+            selectJob(job);
+        } else if (job.getSessionId().equals(selectedSessionId)) {
+            showJob(job);
+        }
+    };
 
-        pollForTranscript();
+    private void selectJob(RecordingJob job) {
+        selectedSessionId = job.getSessionId();
+        jobAdapter.setSelected(selectedSessionId);
+        if (RecordingJob.STATE_TIMED_OUT.equals(job.getState())) {
+            jobManager.retry(job);
+        }
+        showJob(job);
     }
 
-    private void pollForTranscript() {
-        new Thread(() -> {
-            try {
-                URL url = new URL(TRANSCRIPT_URL + clientId);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String inputLine;
-
-                    while ((inputLine = in.readLine()) != null) {
-                        response.append(inputLine);
-                    }
-                    in.close();
-
-                    JSONObject jsonResponse = new JSONObject(response.toString());
-                    String status = jsonResponse.getString("status");
-
-                    if ("completed".equals(status)) {
-                        JSONArray transcript = jsonResponse.getJSONArray("transcript");
-                        String summary = jsonResponse.getString("summary");
-
-                        requireActivity().runOnUiThread(() -> {
-                            displayTranscript(transcript);
-                            displaySummary(summary);
-                        });
-                        return;
-                    }
-                }
-
-                pollHandler.postDelayed(this::pollForTranscript, POLL_INTERVAL);
+    /** Shows the selected job's result, or a spinner while it's still on its way. */
+    private void showJob(RecordingJob job) {
+        boolean sameJob = job.getSessionId().equals(shownSessionId);
+        boolean sameState = sameJob && job.getState().equals(shownState) && job.getResult() == shownResult;
+        if (sameState && job.getPartialTranscript() == shownPartial) {
+            return;
+        }
+        if (!sameJob) {
+            transcriptAdapter.clear();
+        }
+        shownSessionId = job.getSessionId();
+        shownState = job.getState();
+        shownResult = job.getResult();
+        shownPartial = job.getPartialTranscript();
+
+        if (sameState) {
+            // Only more of the transcript has arrived; just those rows are added.
+            transcriptAdapter.updateUtterances(shownPartial);
+            return;
+        }
+        downloadTranscriptButton.setVisibility(View.GONE);
 
-            } catch (Exception e) {
-                Log.e("TRANSCRIPT", "Error polling for transcript", e);
-                pollHandler.postDelayed(this::pollForTranscript, POLL_INTERVAL);
+        String state = job.getState();
+        if (TranscriptStore.JOB_DONE.equals(state)) {
+            if (job.getResult() != null) {
+                displayTranscript(job.getResult().getTranscript());
+                displaySummary(job.getResult().getSummary());
+            } else {
+                showLoading(summaryContainer);
+                transcriptProgress.setVisibility(View.VISIBLE);
+                jobManager.loadResult(job);
             }
-        }).start();
+        } else if (TranscriptStore.JOB_FAILED.equals(state) || RecordingJob.STATE_TIMED_OUT.equals(state)) {
+            transcriptAdapter.clear();
+            summaryContainer.removeAllViews();
+            transcriptProgress.setVisibility(View.GONE);
+        } else {
+            showLoading(summaryContainer);
+            transcriptProgress.setVisibility(View.VISIBLE);
+            if (shownPartial != null) {
+                transcriptAdapter.updateUtterances(shownPartial);
+            } else if (recordingService != null && job.getSessionId().equals(recordingService.getLiveSessionId())) {
+                // The live transcript streamed so far, until the uploaded recording's own replaces it.
+                transcriptAdapter.updateUtterances(recordingService.getLiveUtterances());
+            }
+        }
     }
 
+    private void showLoading(LinearLayout container) {
+        container.removeAllViews();
+
+        ProgressBar progressBar = new ProgressBar(getContext(), null, android.R.attr.progressBarStyleLarge);
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.WRAP_CONTENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+        );
+        params.setMargins(0, 50, 0, 0);
+        params.gravity = android.view.Gravity.CENTER;
+        progressBar.setLayoutParams(params);
+        progressBar.setIndeterminate(true);
+        progressBar.setIndeterminateTintList(
+                ColorStateList.valueOf(ContextCompat.getColor(requireContext(), android.R.color.black))
+        );
+        container.addView(progressBar);
+    }
 
-    private void displayTranscript(JSONArray transcript) {
-        requireActivity().runOnUiThread(() -> {
-            try {
-                transcriptContainer.removeAllViews();
-
-                StringBuilder fullTranscript = new StringBuilder();
-
-                for (int i = 0; i < transcript.length(); i++) {
-                    JSONObject utterance = transcript.getJSONObject(i);
-                    String speaker = utterance.getString("speaker");
-                    String text = utterance.getString("text");
-
-                    fullTranscript.append(speaker).append(": ").append(text).append("\n\n");
-
-                    CardView cardView = new CardView(requireContext());
-                    CardView.LayoutParams cardParams = new CardView.LayoutParams(
-                            CardView.LayoutParams.MATCH_PARENT,
-                            CardView.LayoutParams.WRAP_CONTENT
-                    );
-                    cardParams.setMargins(0, 0, 0, 16);
-                    cardView.setLayoutParams(cardParams);
-                    cardView.setRadius(12);
-                    cardView.setCardElevation(4);
-
-                    int backgroundColor = speaker.endsWith("A") ?
-                            ContextCompat.getColor(requireContext(), android.R.color.darker_gray) :
-                            ContextCompat.getColor(requireContext(), android.R.color.white);
-                    cardView.setCardBackgroundColor(backgroundColor);
-
-                    LinearLayout contentLayout = new LinearLayout(requireContext());
-                    contentLayout.setOrientation(LinearLayout.VERTICAL);
-                    contentLayout.setPadding(16, 16, 16, 16);
-
-                    TextView speakerText = new TextView(requireContext());
-                    speakerText.setText(speaker);
-                    speakerText.setTextSize(14);
-                    speakerText.setTypeface(null, android.graphics.Typeface.BOLD);
-                    speakerText.setTextColor(getResources().getColor(android.R.color.black));
-                    contentLayout.addView(speakerText);
 
-                    TextView contentText = new TextView(requireContext());
-                    contentText.setText(text);
-                    contentText.setTextSize(16);
-                    contentText.setTextColor(getResources().getColor(android.R.color.black));
-                    contentText.setPadding(0, 8, 0, 0);
-                    contentLayout.addView(contentText);
+    private void displayTranscript(List<Utterance> transcript) {
+        transcriptProgress.setVisibility(View.GONE);
+        // Replaces a partial transcript row by row rather than rebuilding the list.
+        transcriptAdapter.updateUtterances(transcript);
+        downloadTranscriptButton.setVisibility(View.VISIBLE);
+        Toast.makeText(getContext(), "Transcript ready!", Toast.LENGTH_SHORT).show();
+    }
 
-                    cardView.addView(contentLayout);
-                    transcriptContainer.addView(cardView);
+    private void saveTranscript() {
+        try {
+            File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+            if (!downloadsDir.exists()) downloadsDir.mkdirs();
+
+            File transcriptFile = new File(downloadsDir, "transcript.txt");
+            try (Writer writer = new BufferedWriter(new FileWriter(transcriptFile))) {
+                for (Utterance utterance : transcriptAdapter.getUtterances()) {
+                    writer.write(utterance.getSpeaker());
+                    writer.write(": ");
+                    writer.write(utterance.getText());
+                    writer.write("\n\n");
                 }
-
-                Button downloadButton = new Button(requireContext());
-                downloadButton.setText("Download Transcript");
-                downloadButton.setOnClickListener(v -> {
-                    try {
-                        File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                        if (!downloadsDir.exists()) downloadsDir.mkdirs();
-
-                        File transcriptFile = new File(downloadsDir, "transcript.txt");
-                        FileOutputStream fos = new FileOutputStream(transcriptFile);
-                        fos.write(fullTranscript.toString().getBytes());
-                        fos.close();
-
-                        Log.d("TRANSCRIPT", "Transcript saved to: " + transcriptFile.getAbsolutePath());
-                        Toast.makeText(getContext(), "Transcript saved to: " + transcriptFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
-                    } catch (IOException e) {
-                        Toast.makeText(getContext(), "Failed to save transcript", Toast.LENGTH_SHORT).show();
-                        Log.e("TRANSCRIPT", "Error saving file", e);
-                    }
-                });
-
-                transcriptContainer.addView(downloadButton);
-
-                Toast.makeText(getContext(), "Transcript ready!", Toast.LENGTH_SHORT).show();
-
-            } catch (JSONException e) {
-                Log.e("TRANSCRIPT", "Error displaying transcript", e);
-                Toast.makeText(getContext(), "Error displaying transcript", Toast.LENGTH_SHORT).show();
             }
-        });
-    }
-
-
 
+            Log.d("TRANSCRIPT", "Transcript saved to: " + transcriptFile.getAbsolutePath());
+            Toast.makeText(getContext(), "Transcript saved to: " + transcriptFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(getContext(), "Failed to save transcript", Toast.LENGTH_SHORT).show();
+            Log.e("TRANSCRIPT", "Error saving file", e);
+        }
+    }
 
     private void displaySummary(String summary) {
         requireActivity().runOnUiThread(() -> {
@@ -514,17 +442,30 @@ public class RecordFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        requireContext().bindService(new Intent(requireContext(), RecordingService.class),
+                serviceConnection, Context.BIND_AUTO_CREATE);
+    }
+
     @Override
     public void onStop() {
         super.onStop();
-        if (mediaRecorder != null) {
-            try {
-                mediaRecorder.stop();
-            } catch (Exception ignored) {}
-            mediaRecorder.release();
-            mediaRecorder = null;
+        // The recording, if any, keeps going in the service; only the screen stops following it.
+        timerHandler.removeCallbacks(timerRunnable);
+        waveformView.setMeter(null);
+        if (recordingService != null) {
+            recordingService.removeListener(recordingListener);
+            recordingService = null;
         }
+        requireContext().unbindService(serviceConnection);
+    }
 
-        pollHandler.removeCallbacksAndMessages(null);
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Jobs keep uploading and polling without the screen; only stop listening.
+        jobManager.removeListener(jobListener);
     }
 }
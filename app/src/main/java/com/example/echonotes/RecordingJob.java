@@ -0,0 +1,62 @@
+package com.example.echonotes;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * One recording on its way from the microphone to a finished transcript. States are the
+ * {@link TranscriptStore} job states plus two that only exist in memory.
+ *
+ * Owned by {@link RecordingJobManager}, which only changes it on the main thread.
+ */
+public class RecordingJob {
+
+    public static final String STATE_RECORDING = "recording";
+    public static final String STATE_TIMED_OUT = "timed_out";
+
+    private final String sessionId;
+    final boolean trimSilence;
+    final AudioProfile profile;
+    String state;
+    int uploadPercent = -1;
+    String clientId;
+    TranscriptResult result;
+    List<Utterance> partialTranscript;
+    // The newest segment handed over while recording, to end the session on if the last one fails.
+    File lastSegment;
+    int lastSegmentIndex;
+
+    RecordingJob(String sessionId, String state, boolean trimSilence, AudioProfile profile) {
+        this.sessionId = sessionId;
+        this.state = state;
+        this.trimSilence = trimSilence;
+        this.profile = profile;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    /** Progress of the last segment's upload, or -1 while it hasn't started. */
+    public int getUploadPercent() {
+        return uploadPercent;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    /** What the server has transcribed so far while the job is processing, or null. */
+    public List<Utterance> getPartialTranscript() {
+        return partialTranscript;
+    }
+
+    /** The finished result, once polled or loaded from the store. */
+    public TranscriptResult getResult() {
+        return result;
+    }
+}
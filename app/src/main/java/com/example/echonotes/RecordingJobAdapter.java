@@ -0,0 +1,129 @@
+package com.example.echonotes;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecordingJobAdapter extends RecyclerView.Adapter<RecordingJobAdapter.JobViewHolder> {
+
+    public interface OnJobClickListener {
+        void onJobClick(RecordingJob job);
+    }
+
+    private final List<RecordingJob> jobs = new ArrayList<>();
+    private final OnJobClickListener listener;
+    private final int selectedColor;
+    private final int defaultColor;
+    private String selectedSessionId;
+
+    public RecordingJobAdapter(Context context, OnJobClickListener listener) {
+        this.listener = listener;
+        this.selectedColor = ContextCompat.getColor(context, android.R.color.darker_gray);
+        this.defaultColor = ContextCompat.getColor(context, android.R.color.white);
+    }
+
+    public void setJobs(List<RecordingJob> newJobs) {
+        jobs.clear();
+        jobs.addAll(newJobs);
+        notifyDataSetChanged();
+    }
+
+    /** Redraws one job, or adds it at the top if it's new. */
+    public void updateJob(RecordingJob job) {
+        int index = jobs.indexOf(job);
+        if (index >= 0) {
+            notifyItemChanged(index);
+        } else {
+            jobs.add(0, job);
+            notifyItemInserted(0);
+        }
+    }
+
+    public void removeJob(RecordingJob job) {
+        int index = jobs.indexOf(job);
+        if (index >= 0) {
+            jobs.remove(index);
+            notifyItemRemoved(index);
+        }
+    }
+
+    public void setSelected(String sessionId) {
+        selectedSessionId = sessionId;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public JobViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_recording_job, parent, false);
+        return new JobViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull JobViewHolder holder, int position) {
+        holder.bind(jobs.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return jobs.size();
+    }
+
+    class JobViewHolder extends RecyclerView.ViewHolder {
+        CardView cardView;
+        TextView tvTitle;
+        TextView tvState;
+        ProgressBar progressBar;
+
+        public JobViewHolder(@NonNull View itemView) {
+            super(itemView);
+            cardView = (CardView) itemView;
+            tvTitle = itemView.findViewById(R.id.tvJobTitle);
+            tvState = itemView.findViewById(R.id.tvJobState);
+            progressBar = itemView.findViewById(R.id.jobProgress);
+        }
+
+        public void bind(RecordingJob job) {
+            tvTitle.setText("Recording " + job.getSessionId());
+            tvState.setText(stateLabel(job.getState()));
+            cardView.setCardBackgroundColor(job.getSessionId().equals(selectedSessionId) ? selectedColor : defaultColor);
+
+            String state = job.getState();
+            if (TranscriptStore.JOB_UPLOADING.equals(state) && job.getUploadPercent() >= 0) {
+                progressBar.setVisibility(View.VISIBLE);
+                progressBar.setIndeterminate(false);
+                progressBar.setProgress(job.getUploadPercent());
+            } else if (TranscriptStore.JOB_UPLOADING.equals(state) || TranscriptStore.JOB_PROCESSING.equals(state)) {
+                progressBar.setVisibility(View.VISIBLE);
+                progressBar.setIndeterminate(true);
+            } else {
+                progressBar.setVisibility(View.GONE);
+            }
+
+            itemView.setOnClickListener(v -> listener.onJobClick(job));
+        }
+    }
+
+    private static String stateLabel(String state) {
+        switch (state) {
+            case RecordingJob.STATE_RECORDING: return "Recording";
+            case TranscriptStore.JOB_QUEUED: return "Waiting to upload";
+            case TranscriptStore.JOB_UPLOADING: return "Uploading";
+            case TranscriptStore.JOB_PROCESSING: return "Transcribing";
+            case TranscriptStore.JOB_DONE: return "Done";
+            case RecordingJob.STATE_TIMED_OUT: return "Timed out, tap to retry";
+            default: return "Failed";
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.echonotes;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.work.WorkInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tracks every recording from capture to finished transcript, so back-to-back recordings each
+ * keep their own upload and poll state instead of sharing one client_id.
+ *
+ * Uploads go through {@link UploadQueue} and results are watched by one shared
+ * {@link TranscriptPoller}. Both outlive the screen, so leaving the fragment doesn't lose a job.
+ * Jobs are read and changed on the main thread, and listeners are called there too.
+ *
+ * Every finished segment is also logged to the session's {@link SegmentIndex}. If the process dies
+ * mid-recording, the next launch finds the index and uploads the segments it lists, ending the
+ * session at the last one; only the segment that was being written is lost.
+ */
+public class RecordingJobManager {
+
+    private static final String TAG = "RecordingJobManager";
+    static final String SERVER_URL = "https://transcript-api-bouw.onrender.com/upload";
+    static final String TRANSCRIPT_URL = "https://transcript-api-bouw.onrender.com/transcript/";
+    static final String STATUS_URL = "https://transcript-api-bouw.onrender.com/transcripts/status";
+    static final String LIVE_URL = "wss://transcript-api-bouw.onrender.com/live";
+    // Jobs brought back from the store on launch; older ones stay on disk only.
+    private static final int RESTORED_JOBS = 20;
+
+    public interface Listener {
+        void onJobChanged(RecordingJob job);
+    }
+
+    private static RecordingJobManager instance;
+
+    public static synchronized RecordingJobManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingJobManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final Context appContext;
+    private final TranscriptStore store;
+    private final TranscriptPoller poller = new TranscriptPoller(new TranscriptClient(TRANSCRIPT_URL, STATUS_URL));
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, RecordingJob> jobs = new HashMap<>();
+    // Open indexes of sessions being recorded; only touched on the store executor.
+    private final Map<String, SegmentIndex> indexes = new HashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean restored = false;
+
+    private RecordingJobManager(Context appContext) {
+        this.appContext = appContext;
+        this.store = TranscriptStore.getInstance(appContext);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** All known jobs, newest first. */
+    public List<RecordingJob> getJobs() {
+        List<RecordingJob> sorted = new ArrayList<>(jobs.values());
+        Collections.sort(sorted, (a, b) -> b.getSessionId().compareTo(a.getSessionId()));
+        return sorted;
+    }
+
+    /** Whether any job is still being recorded, uploaded or transcribed. */
+    public boolean hasPendingJobs() {
+        for (RecordingJob job : jobs.values()) {
+            switch (job.state) {
+                case RecordingJob.STATE_RECORDING:
+                case TranscriptStore.JOB_QUEUED:
+                case TranscriptStore.JOB_UPLOADING:
+                case TranscriptStore.JOB_PROCESSING:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param outputDir   where the recorder writes the session's segments
+     * @param trimSilence cut long silences out of the audio before it is uploaded
+     * @param profile     the encoding the session is being recorded with
+     */
+    public RecordingJob startRecording(String sessionId, File outputDir, boolean trimSilence, AudioProfile profile) {
+        RecordingJob job = new RecordingJob(sessionId, RecordingJob.STATE_RECORDING, trimSilence, profile);
+        jobs.put(sessionId, job);
+        notifyChanged(job);
+
+        storeExecutor.execute(() -> {
+            try {
+                indexes.put(sessionId, SegmentIndex.create(indexFile(sessionId), profile.name(), trimSilence, outputDir));
+            } catch (IOException e) {
+                Log.e(TAG, "Could not create segment index for " + sessionId + ", it won't be recoverable", e);
+            }
+        });
+        return job;
+    }
+
+    /** Drops a recording that never produced audio. */
+    public void discard(String sessionId) {
+        RecordingJob job = jobs.remove(sessionId);
+        if (job != null) {
+            job.state = TranscriptStore.JOB_FAILED;
+            notifyChanged(job);
+        }
+        storeExecutor.execute(() -> closeIndex(sessionId));
+    }
+
+    /**
+     * Ends a recording whose last segment never came, e.g. because the recorder failed to stop.
+     * The session finishes at the newest segment already handed over, or is discarded if there
+     * isn't one.
+     */
+    public void endWithoutLastSegment(String sessionId) {
+        RecordingJob job = jobs.get(sessionId);
+        if (job == null || !RecordingJob.STATE_RECORDING.equals(job.state)) return;
+        if (job.lastSegment == null) {
+            discard(sessionId);
+        } else {
+            onSegmentRecorded(sessionId, job.lastSegment, job.lastSegmentIndex, true);
+        }
+    }
+
+    public void onSegmentRecorded(String sessionId, File segment, int index, boolean isLast) {
+        RecordingJob job = jobs.get(sessionId);
+        if (job == null) return;
+        if (!isLast) {
+            job.lastSegment = segment;
+            job.lastSegmentIndex = index;
+        }
+        UploadQueue.enqueue(appContext, SERVER_URL, sessionId, segment, index, isLast, job.trimSilence, job.profile);
+        storeExecutor.execute(() -> logSegment(sessionId, segment, index, isLast));
+
+        if (isLast) {
+            job.state = TranscriptStore.JOB_QUEUED;
+            notifyChanged(job);
+            observeUpload(job);
+        }
+    }
+
+    private void logSegment(String sessionId, File segment, int index, boolean isLast) {
+        SegmentIndex segmentIndex = indexes.get(sessionId);
+        if (segmentIndex == null) return;
+        try {
+            if (isLast) {
+                // Everything is with the upload queue now, which survives on its own.
+                segmentIndex.markEnded();
+                closeIndex(sessionId);
+            } else {
+                segmentIndex.append(index, durationMs(segment), segment.length(), SegmentIndex.crc32(segment));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not log segment " + index + " of " + sessionId, e);
+        }
+    }
+
+    private void closeIndex(String sessionId) {
+        SegmentIndex segmentIndex = indexes.remove(sessionId);
+        if (segmentIndex == null) return;
+        try {
+            segmentIndex.close();
+        } catch (IOException ignored) {
+        }
+        indexFile(sessionId).delete();
+    }
+
+    /**
+     * Queues what was recorded of sessions the process died in the middle of, ending each at its
+     * last finished segment. Only index records and file sizes are read, so this takes as long as
+     * there are segments, not audio. Call once, on launch.
+     */
+    public void recoverInterruptedSessions() {
+        storeExecutor.execute(() -> {
+            File[] files = indexDir().listFiles((dir, name) -> name.endsWith(SegmentIndex.SUFFIX));
+            if (files == null) return;
+            for (File file : files) {
+                String sessionId = file.getName().substring(0, file.getName().length() - SegmentIndex.SUFFIX.length());
+                if (indexes.containsKey(sessionId)) continue;
+                try (SegmentIndex segmentIndex = SegmentIndex.open(file)) {
+                    if (!segmentIndex.isEnded()) recover(segmentIndex);
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.e(TAG, "Could not recover session from " + file.getName(), e);
+                }
+                file.delete();
+            }
+        });
+    }
+
+    private void recover(SegmentIndex segmentIndex) throws IOException {
+        String sessionId = segmentIndex.getSessionId();
+        AudioProfile profile = AudioProfile.valueOf(segmentIndex.getProfileName());
+        File outputDir = segmentIndex.getOutputDir();
+        List<SegmentIndex.Entry> intact = segmentIndex.intactEntries(
+                i -> SegmentedRecorder.segmentFile(outputDir, sessionId, i, profile));
+        if (intact.isEmpty()) {
+            Log.w(TAG, "Session " + sessionId + " was interrupted before its first segment finished");
+            return;
+        }
+
+        TranscriptStore.UploadJob saved = store.findJob(sessionId);
+        if (saved != null && !TranscriptStore.JOB_QUEUED.equals(saved.state)
+                && !TranscriptStore.JOB_UPLOADING.equals(saved.state)) {
+            return;
+        }
+        // Segments up to the last one queued are already in WorkManager. The last intact one is
+        // queued again regardless, this time marked as the end of the session.
+        int first = 0;
+        if (saved != null) {
+            first = intact.size() - 1;
+            for (int i = 0; i < intact.size(); i++) {
+                File segment = SegmentedRecorder.segmentFile(outputDir, sessionId, intact.get(i).index, profile);
+                if (segment.getName().equals(saved.audioFile)) {
+                    first = Math.min(i + 1, intact.size() - 1);
+                    break;
+                }
+            }
+        }
+        List<SegmentIndex.Entry> toQueue = intact.subList(first, intact.size());
+        Log.i(TAG, "Recovering session " + sessionId + ": " + intact.size() + " segments, queueing " + toQueue.size());
+
+        boolean trimSilence = segmentIndex.isTrimSilence();
+        mainHandler.post(() -> {
+            RecordingJob job = jobs.get(sessionId);
+            if (job == null) {
+                job = new RecordingJob(sessionId, TranscriptStore.JOB_QUEUED, trimSilence, profile);
+                jobs.put(sessionId, job);
+            }
+            job.state = TranscriptStore.JOB_QUEUED;
+            for (int i = 0; i < toQueue.size(); i++) {
+                int index = toQueue.get(i).index;
+                UploadQueue.enqueue(appContext, SERVER_URL, sessionId,
+                        SegmentedRecorder.segmentFile(outputDir, sessionId, index, profile), index,
+                        i == toQueue.size() - 1, trimSilence, profile);
+            }
+            observeUpload(job);
+            notifyChanged(job);
+        });
+    }
+
+    private File indexDir() {
+        File dir = new File(appContext.getFilesDir(), "segment-index");
+        if (!dir.exists()) dir.mkdirs();
+        return dir;
+    }
+
+    private File indexFile(String sessionId) {
+        return new File(indexDir(), sessionId + SegmentIndex.SUFFIX);
+    }
+
+    private static long durationMs(File segment) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(segment.getAbsolutePath());
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration != null ? Long.parseLong(duration) : 0;
+        } catch (RuntimeException e) {
+            return 0;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /** Brings back jobs from earlier runs and resumes whatever was still in flight. Runs once. */
+    public void restore() {
+        if (restored) return;
+        restored = true;
+
+        storeExecutor.execute(() -> {
+            List<TranscriptStore.UploadJob> saved = store.recentJobs(RESTORED_JOBS);
+            mainHandler.post(() -> {
+                for (TranscriptStore.UploadJob savedJob : saved) {
+                    if (jobs.containsKey(savedJob.sessionId)) continue;
+
+                    RecordingJob job = new RecordingJob(savedJob.sessionId, savedJob.state, false, null);
+                    job.clientId = savedJob.clientId;
+                    jobs.put(job.getSessionId(), job);
+
+                    if (TranscriptStore.JOB_QUEUED.equals(job.state) || TranscriptStore.JOB_UPLOADING.equals(job.state)) {
+                        observeUpload(job);
+                    } else if (TranscriptStore.JOB_PROCESSING.equals(job.state)) {
+                        poll(job);
+                    }
+                    notifyChanged(job);
+                }
+            });
+        });
+    }
+
+    /** Reads a finished job's transcript from disk; listeners hear about it once it's loaded. */
+    public void loadResult(RecordingJob job) {
+        if (job.result != null || job.clientId == null) return;
+
+        String clientId = job.clientId;
+        storeExecutor.execute(() -> {
+            TranscriptResult stored = store.load(clientId);
+            if (stored == null || !stored.isCompleted()) return;
+            mainHandler.post(() -> {
+                job.result = stored;
+                notifyChanged(job);
+            });
+        });
+    }
+
+    /** Starts watching a job that gave up waiting for its transcript. */
+    public void retry(RecordingJob job) {
+        if (!RecordingJob.STATE_TIMED_OUT.equals(job.state)) return;
+        job.state = TranscriptStore.JOB_PROCESSING;
+        notifyChanged(job);
+        poll(job);
+    }
+
+    private void observeUpload(RecordingJob job) {
+        LiveData<List<WorkInfo>> workInfos = UploadQueue.observe(appContext, job.getSessionId());
+        workInfos.observeForever(new Observer<List<WorkInfo>>() {
+            @Override
+            public void onChanged(List<WorkInfo> infos) {
+                for (WorkInfo info : infos) {
+                    if (info.getState() == WorkInfo.State.RUNNING) {
+                        job.state = TranscriptStore.JOB_UPLOADING;
+                        if (info.getTags().contains(UploadQueue.TAG_LAST_SEGMENT)) {
+                            job.uploadPercent = info.getProgress().getInt(UploadQueue.KEY_PERCENT, job.uploadPercent);
+                        }
+                        notifyChanged(job);
+                    }
+                    if (!info.getTags().contains(UploadQueue.TAG_LAST_SEGMENT)) continue;
+
+                    if (info.getState() == WorkInfo.State.SUCCEEDED) {
+                        workInfos.removeObserver(this);
+                        job.clientId = info.getOutputData().getString(UploadQueue.KEY_CLIENT_ID);
+                        job.state = TranscriptStore.JOB_PROCESSING;
+                        job.uploadPercent = 100;
+                        notifyChanged(job);
+                        poll(job);
+                    } else if (info.getState().isFinished()) {
+                        workInfos.removeObserver(this);
+                        Log.e(TAG, "Upload of session " + job.getSessionId() + " ended as " + info.getState());
+                        job.state = TranscriptStore.JOB_FAILED;
+                        notifyChanged(job);
+                    }
+                }
+            }
+        });
+    }
+
+    private void poll(RecordingJob job) {
+        String clientId = job.clientId;
+        poller.poll(clientId, new TranscriptPoller.Listener() {
+            @Override
+            public void onCompleted(TranscriptResult serverResult) {
+                TranscriptResult result = toRecordingTimeline(job, serverResult);
+                store.saveResult(clientId, result);
+                mainHandler.post(() -> {
+                    job.result = result;
+                    job.partialTranscript = null;
+                    job.state = TranscriptStore.JOB_DONE;
+                    notifyChanged(job);
+                });
+            }
+
+            @Override
+            public void onPartial(TranscriptResult partial) {
+                List<Utterance> transcript = toRecordingTimeline(job, partial).getTranscript();
+                mainHandler.post(() -> {
+                    if (job.result != null) return;
+                    job.partialTranscript = transcript;
+                    notifyChanged(job);
+                });
+            }
+
+            @Override
+            public void onTimedOut() {
+                mainHandler.post(() -> {
+                    job.state = RecordingJob.STATE_TIMED_OUT;
+                    notifyChanged(job);
+                });
+            }
+        });
+    }
+
+    /** Timings from silence-trimmed uploads are moved back onto the recording's timeline. */
+    private TranscriptResult toRecordingTimeline(RecordingJob job, TranscriptResult serverResult) {
+        OffsetMap offsets = store.loadOffsetMap(job.getSessionId());
+        return offsets == null || serverResult.getTranscript() == null ? serverResult
+                : new TranscriptResult(serverResult.getStatus(),
+                        offsets.toOriginal(serverResult.getTranscript()), serverResult.getSummary());
+    }
+
+    private void notifyChanged(RecordingJob job) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onJobChanged(job);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.echonotes;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the recorder and the live transcript for as long as a session is being recorded, so
+ * switching tabs or locking the screen doesn't stop it. Screens bind to it, ask it to start and
+ * stop, and listen for changes; unbinding leaves the recording running.
+ *
+ * It runs in the foreground, as a microphone service while recording. Once recording stops it
+ * stays in the foreground, as a data sync service, until the {@link RecordingJobManager} has no
+ * jobs left uploading or waiting on their transcript, so those aren't cut short by the process
+ * being reclaimed in the background. Everything is called on the main thread.
+ */
+public class RecordingService extends Service {
+
+    private static final String TAG = "RecordingService";
+    private static final String CHANNEL_ID = "recording";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String ACTION_STOP = "com.example.echonotes.action.STOP_RECORDING";
+
+    /** Called on the main thread. */
+    public interface Listener {
+        void onRecordingChanged(boolean recording);
+
+        void onLiveUtterance(String sessionId, int index, Utterance utterance);
+
+        void onRecordingError(String message);
+    }
+
+    public class LocalBinder extends Binder {
+        public RecordingService getService() {
+            return RecordingService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+    private RecordingJobManager jobManager;
+
+    private SessionRecorder recorder;
+    private LevelMeter levelMeter;
+    private String sessionId;
+    private long startedAtMs;
+    private LiveTranscriptionClient liveClient;
+    // Live transcript of the session being streamed, by utterance index; kept after it stops.
+    private String liveSessionId;
+    private final List<Utterance> liveUtterances = new ArrayList<>();
+    private boolean foreground = false;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        jobManager = RecordingJobManager.getInstance(this);
+        jobManager.addListener(jobListener);
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopRecording();
+        }
+        // A recording can't be picked up again after the process dies; the segment index covers that.
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onTimeout(int startId, int fgsType) {
+        // Android 15 caps how long a data sync service may run; the jobs carry on without it.
+        Log.w(TAG, "Foreground time ran out");
+        stopForegroundCompat();
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        if (recorder != null) {
+            // Hand over what was recorded rather than dropping the session.
+            stopRecording();
+        }
+        jobManager.removeListener(jobListener);
+        mainHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /** The session being recorded, or null. */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /** {@link SystemClock#elapsedRealtime()} when the current recording started. */
+    public long getStartedAtMs() {
+        return startedAtMs;
+    }
+
+    /** Levels of the current recording, or null if its profile doesn't record through PCM. */
+    @Nullable
+    public LevelMeter getLevelMeter() {
+        return levelMeter;
+    }
+
+    public String getLiveSessionId() {
+        return liveSessionId;
+    }
+
+    /** The live transcript received so far, in order, without gaps. */
+    public List<Utterance> getLiveUtterances() {
+        List<Utterance> received = new ArrayList<>(liveUtterances.size());
+        for (Utterance utterance : liveUtterances) {
+            if (utterance != null) received.add(utterance);
+        }
+        return received;
+    }
+
+    /**
+     * Starts recording a new session into {@code outputDir}. The caller needs the microphone
+     * permission, and must be in the foreground for the service to be allowed to follow it.
+     *
+     * @return the job tracking the session, or null if the recorder couldn't start
+     */
+    @Nullable
+    public RecordingJob startRecording(File outputDir, String newSessionId, AudioProfile profile,
+                                       boolean trimSilence, boolean liveTranscript) {
+        if (recorder != null) return null;
+        // Started as well as bound, so the recording outlives whoever asked for it.
+        ContextCompat.startForegroundService(this, new Intent(this, RecordingService.class));
+        startForegroundCompat(true);
+
+        RecordingJob job = jobManager.startRecording(newSessionId, outputDir, trimSilence, profile);
+        SegmentedRecorder.SegmentListener segmentListener = new SegmentedRecorder.SegmentListener() {
+            @Override
+            public void onSegmentFinished(File segment, int index, boolean isLast) {
+                jobManager.onSegmentRecorded(newSessionId, segment, index, isLast);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Recording error in " + newSessionId, e);
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onRecordingError("Recording error");
+                }
+            }
+
+            @Override
+            public void onAborted(Exception e) {
+                Log.e(TAG, "Recording " + newSessionId + " ended without its last segment", e);
+                jobManager.endWithoutLastSegment(newSessionId);
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onRecordingError("Recording error");
+                }
+            }
+        };
+
+        SessionRecorder newRecorder;
+        // AAC profiles record through the PCM pipeline, which also gives the live waveform.
+        if (profile.canEncodeFromPcm()) {
+            PcmSegmentedRecorder pcmRecorder = new PcmSegmentedRecorder(outputDir, newSessionId,
+                    SegmentedRecorder.DEFAULT_SEGMENT_DURATION_MS, profile, segmentListener);
+            levelMeter = pcmRecorder.getLevelMeter();
+            if (liveTranscript) {
+                startLiveTranscription(newSessionId, profile, pcmRecorder);
+            }
+            newRecorder = pcmRecorder;
+        } else {
+            newRecorder = new SegmentedRecorder(outputDir, newSessionId,
+                    SegmentedRecorder.DEFAULT_SEGMENT_DURATION_MS, profile, segmentListener);
+        }
+
+        try {
+            newRecorder.start();
+        } catch (IOException e) {
+            Log.e(TAG, "Recording failed to start", e);
+            jobManager.discard(newSessionId);
+            levelMeter = null;
+            cancelLiveTranscription();
+            updateForeground();
+            return null;
+        }
+        recorder = newRecorder;
+        sessionId = newSessionId;
+        startedAtMs = SystemClock.elapsedRealtime();
+        notifyRecordingChanged();
+        return job;
+    }
+
+    /**
+     * Stops recording and hands the last segment over; uploading carries on from there.
+     *
+     * @return false if the recorder failed, in which case listeners have been told
+     */
+    public boolean stopRecording() {
+        if (recorder == null) return false;
+        SessionRecorder stopping = recorder;
+        String stoppingSessionId = sessionId;
+        LiveTranscriptionClient live = liveClient;
+        recorder = null;
+        sessionId = null;
+        levelMeter = null;
+        liveClient = null;
+        // Earlier segments are already uploaded or in flight; this hands over the last one.
+        try {
+            if (live != null) {
+                // Live transcription only runs on the PCM recorder. The stream ends once the encoder's
+                // last frames are in it; whatever is still unsent goes out in the background.
+                ((PcmSegmentedRecorder) stopping).stop(live::finish);
+            } else {
+                stopping.stop();
+            }
+        } catch (RuntimeException e) {
+            // MediaRecorder throws when it captured nothing, e.g. when stopped right after starting.
+            Log.e(TAG, "Recording failed to stop", e);
+            if (live != null) live.cancel();
+            jobManager.endWithoutLastSegment(stoppingSessionId);
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onRecordingError("Recording error");
+            }
+            notifyRecordingChanged();
+            updateForeground();
+            return false;
+        }
+        notifyRecordingChanged();
+        updateForeground();
+        return true;
+    }
+
+    private void startLiveTranscription(String newSessionId, AudioProfile profile, PcmSegmentedRecorder pcmRecorder) {
+        liveSessionId = newSessionId;
+        liveUtterances.clear();
+        liveClient = new LiveTranscriptionClient(RecordingJobManager.LIVE_URL, newSessionId, profile.sampleRate,
+                new LiveTranscriptionClient.Listener() {
+                    @Override
+                    public void onUtterance(int index, Utterance utterance, boolean isFinal) {
+                        mainHandler.post(() -> onLiveUtterance(newSessionId, index, utterance));
+                    }
+
+                    @Override
+                    public void onConnectionChanged(boolean connected) {
+                        Log.d(TAG, "Live transcription " + (connected ? "connected" : "disconnected"));
+                    }
+                });
+        pcmRecorder.setEncodedFrameSink(liveClient);
+        liveClient.start();
+    }
+
+    private void cancelLiveTranscription() {
+        if (liveClient != null) {
+            liveClient.cancel();
+            liveClient = null;
+        }
+    }
+
+    private void onLiveUtterance(String fromSessionId, int index, Utterance utterance) {
+        if (!fromSessionId.equals(liveSessionId)) return;
+        while (liveUtterances.size() <= index) liveUtterances.add(null);
+        liveUtterances.set(index, utterance);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onLiveUtterance(fromSessionId, index, utterance);
+        }
+    }
+
+    private void notifyRecordingChanged() {
+        boolean recording = isRecording();
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onRecordingChanged(recording);
+        }
+    }
+
+    private final RecordingJobManager.Listener jobListener = job -> updateForeground();
+
+    /** Keeps the service in the foreground for as long as there is work it is covering. */
+    private void updateForeground() {
+        // Only work that began with a recording here is covered; jobs restored on launch aren't.
+        if (recorder != null || !foreground) return;
+        if (jobManager.hasPendingJobs()) {
+            startForegroundCompat(false);
+        } else {
+            stopForegroundCompat();
+            stopSelf();
+        }
+    }
+
+    private void startForegroundCompat(boolean recording) {
+        Notification notification = buildNotification(recording);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            startForeground(NOTIFICATION_ID, notification, recording
+                    ? ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE
+                    : ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+        foreground = true;
+    }
+
+    private void stopForegroundCompat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            stopForeground(STOP_FOREGROUND_REMOVE);
+        } else {
+            stopForeground(true);
+        }
+        foreground = false;
+    }
+
+    private Notification buildNotification(boolean recording) {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && manager.getNotificationChannel(CHANNEL_ID) == null) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Recording",
+                    NotificationManager.IMPORTANCE_LOW));
+        }
+
+        Intent openApp = new Intent(this, HomeActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_mic)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setContentIntent(PendingIntent.getActivity(this, 0, openApp, PendingIntent.FLAG_IMMUTABLE));
+        if (recording) {
+            Intent stop = new Intent(this, RecordingService.class).setAction(ACTION_STOP);
+            builder.setContentTitle("Recording")
+                    .setUsesChronometer(true)
+                    .setWhen(System.currentTimeMillis())
+                    .addAction(0, "Stop", PendingIntent.getService(this, 0, stop, PendingIntent.FLAG_IMMUTABLE));
+        } else {
+            builder.setContentTitle("Preparing transcripts")
+                    .setContentText("Uploading and waiting for the server");
+        }
+        return builder.build();
+    }
+}
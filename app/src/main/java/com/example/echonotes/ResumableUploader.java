@@ -0,0 +1,241 @@
+package com.example.echonotes;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Uploads a file in byte-range chunks against an upload session, checkpointing the acknowledged
+ * offset after every chunk.
+ *
+ * Protocol, relative to the sessions URL:
+ * <ul>
+ *   <li>{@code POST /} with a JSON body {@code {filename, mime_type, length, metadata}} opens a
+ *   session and answers {@code {"upload_id": ...}}.</li>
+ *   <li>{@code HEAD /{upload_id}} answers the committed offset in the {@code Upload-Offset}
+ *   header, or 404 once the session has expired.</li>
+ *   <li>{@code PUT /{upload_id}} with {@code Content-Range: bytes start-end/total} appends one
+ *   chunk and answers {@code {"offset": n, "complete": bool}}. The response to the final chunk
+ *   carries whatever the plain upload endpoint would have answered, e.g. the client_id. An empty
+ *   {@code PUT} with {@code Content-Range: bytes *}{@code /total} replays that final answer when
+ *   the last chunk was committed but its reply was lost.</li>
+ * </ul>
+ */
+public class ResumableUploader {
+
+    private static final String TAG = "ResumableUploader";
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long RETRY_DELAY_MS = 2000;
+
+    /** Thrown when the server has no session endpoint, so callers can fall back to a plain upload. */
+    public static class UnsupportedException extends IOException {
+        public UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    private final String sessionsUrl;
+    private final UploadCheckpointStore checkpointStore;
+    private final int chunkSize;
+    private final int maxRetries;
+    private final byte[] buffer;
+
+    public ResumableUploader(String sessionsUrl, UploadCheckpointStore checkpointStore) {
+        this(sessionsUrl, checkpointStore, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_RETRIES);
+    }
+
+    public ResumableUploader(String sessionsUrl, UploadCheckpointStore checkpointStore, int chunkSize, int maxRetries) {
+        this.sessionsUrl = sessionsUrl;
+        this.checkpointStore = checkpointStore;
+        this.chunkSize = chunkSize;
+        this.maxRetries = maxRetries;
+        this.buffer = new byte[Math.min(chunkSize, 64 * 1024)];
+    }
+
+    /**
+     * Uploads {@code file}, resuming an earlier session for it if one is still open on the server.
+     *
+     * @return the server's response to the final chunk
+     */
+    public JSONObject upload(File file, String mimeType, JSONObject metadata,
+                             MultipartUploader.ProgressListener listener) throws IOException, JSONException {
+        if (file.length() == 0) {
+            throw new IOException("Nothing to upload in " + file.getName());
+        }
+
+        UploadCheckpointStore.Checkpoint checkpoint = resumeOrCreate(file, mimeType, metadata);
+        long total = file.length();
+        int failures = 0;
+
+        try (RandomAccessFile source = new RandomAccessFile(file, "r")) {
+            while (true) {
+                long offset = checkpoint.offset;
+                int length = (int) Math.min(chunkSize, total - offset);
+                JSONObject response;
+                try {
+                    response = putChunk(checkpoint.uploadId, source, offset, length, total, listener);
+                } catch (IOException e) {
+                    if (++failures > maxRetries) throw e;
+                    Log.w(TAG, "Chunk at " + offset + " failed, retrying", e);
+                    sleepBeforeRetry(failures);
+                    try {
+                        // The server may have committed the chunk even though the reply was lost.
+                        checkpoint = checkpoint.withOffset(queryOffset(checkpoint.uploadId));
+                        checkpointStore.save(file, checkpoint);
+                    } catch (SessionExpiredException expired) {
+                        throw expired;
+                    } catch (IOException stillOffline) {
+                        Log.w(TAG, "Could not query upload offset, keeping " + offset, stillOffline);
+                    }
+                    continue;
+                }
+
+                failures = 0;
+                checkpoint = checkpoint.withOffset(response.getLong("offset"));
+                if (response.optBoolean("complete", false)) {
+                    checkpointStore.clear(file);
+                    return response;
+                }
+                checkpointStore.save(file, checkpoint);
+            }
+        }
+    }
+
+    private UploadCheckpointStore.Checkpoint resumeOrCreate(File file, String mimeType, JSONObject metadata)
+            throws IOException, JSONException {
+        UploadCheckpointStore.Checkpoint checkpoint = checkpointStore.load(file);
+        if (checkpoint != null && checkpoint.matches(file)) {
+            try {
+                long offset = queryOffset(checkpoint.uploadId);
+                Log.d(TAG, "Resuming " + file.getName() + " at " + offset + "/" + file.length());
+                return checkpoint.withOffset(offset);
+            } catch (SessionExpiredException e) {
+                Log.d(TAG, "Upload session for " + file.getName() + " expired, starting over");
+            }
+        }
+
+        checkpoint = new UploadCheckpointStore.Checkpoint(
+                createSession(file, mimeType, metadata), file.length(), file.lastModified(), 0);
+        checkpointStore.save(file, checkpoint);
+        return checkpoint;
+    }
+
+    private String createSession(File file, String mimeType, JSONObject metadata) throws IOException, JSONException {
+        JSONObject body = new JSONObject();
+        body.put("filename", file.getName());
+        body.put("mime_type", mimeType);
+        body.put("length", file.length());
+        body.put("metadata", metadata);
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(sessionsUrl).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(bytes);
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_BAD_METHOD) {
+                throw new UnsupportedException("Resumable uploads not supported: " + responseCode);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_CREATED) {
+                throw new IOException("Failed to open upload session: " + responseCode);
+            }
+            return new JSONObject(readBody(connection)).getString("upload_id");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long queryOffset(String uploadId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(sessionsUrl + "/" + uploadId).openConnection();
+        try {
+            connection.setRequestMethod("HEAD");
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new SessionExpiredException();
+            }
+            String offset = connection.getHeaderField("Upload-Offset");
+            if (responseCode != HttpURLConnection.HTTP_OK || offset == null) {
+                throw new IOException("Failed to query upload offset: " + responseCode);
+            }
+            return Long.parseLong(offset);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private JSONObject putChunk(String uploadId, RandomAccessFile source, long offset, int length, long total,
+                                MultipartUploader.ProgressListener listener) throws IOException, JSONException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(sessionsUrl + "/" + uploadId).openConnection();
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Range", length > 0
+                    ? "bytes " + offset + "-" + (offset + length - 1) + "/" + total
+                    : "bytes */" + total);
+            connection.setFixedLengthStreamingMode(length);
+
+            source.seek(offset);
+            try (OutputStream out = connection.getOutputStream()) {
+                int remaining = length;
+                while (remaining > 0) {
+                    int read = source.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (read == -1) throw new IOException("File shrank during upload");
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                    if (listener != null) listener.onProgress(offset + length - remaining, total);
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Chunk upload failed: " + responseCode);
+            }
+            return new JSONObject(readBody(connection));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void sleepBeforeRetry(int attempt) throws IOException {
+        try {
+            Thread.sleep(RETRY_DELAY_MS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        }
+    }
+
+    private static String readBody(HttpURLConnection connection) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+        StringBuilder response = new StringBuilder();
+        String inputLine;
+        while ((inputLine = in.readLine()) != null) {
+            response.append(inputLine);
+        }
+        in.close();
+        return response.toString();
+    }
+
+    private static class SessionExpiredException extends IOException {
+    }
+}
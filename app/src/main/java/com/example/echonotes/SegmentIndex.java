@@ -0,0 +1,281 @@
+package com.example.echonotes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of the finished segments of one recording session, so a session
+ * interrupted by the process being killed can be found and uploaded on the next launch.
+ *
+ * The file is a fixed header (what the session was recorded with and where) followed by
+ * fixed-size records, each carrying its own CRC. A record torn by a crash fails its CRC and ends
+ * the log. Writes land in the page cache as soon as they are made, so they survive the process
+ * dying; each record is also forced to disk. Reading an index costs one pass over its records and
+ * never touches the audio.
+ */
+public class SegmentIndex implements Closeable {
+
+    public static final String SUFFIX = ".segidx";
+
+    private static final int MAGIC = 0x45534958; // "ESIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 1024;
+    private static final int RECORD_BYTES = 40;
+    private static final int INITIAL_RECORDS = 256;
+
+    private static final int TYPE_SEGMENT = 1;
+    private static final int TYPE_END = 2;
+
+    public static class Entry {
+        public final int index;
+        /** Where the segment starts in the recording. */
+        public final long offsetMs;
+        public final long durationMs;
+        public final long length;
+        /** CRC32 of the segment's bytes when it was finished. */
+        public final int crc;
+
+        Entry(int index, long offsetMs, long durationMs, long length, int crc) {
+            this.index = index;
+            this.offsetMs = offsetMs;
+            this.durationMs = durationMs;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final String profileName;
+    private final boolean trimSilence;
+    private final File outputDir;
+    private final List<Entry> entries = new ArrayList<>();
+    private MappedByteBuffer map;
+    private int recordCount;
+    private boolean ended;
+
+    private SegmentIndex(File file, RandomAccessFile raf, String profileName, boolean trimSilence, File outputDir) {
+        this.file = file;
+        this.raf = raf;
+        this.profileName = profileName;
+        this.trimSilence = trimSilence;
+        this.outputDir = outputDir;
+    }
+
+    /** Starts the index for a new session, replacing any left over under the same name. */
+    public static SegmentIndex create(File file, String profileName, boolean trimSilence, File outputDir)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        SegmentIndex index = new SegmentIndex(file, raf, profileName, trimSilence, outputDir);
+        try {
+            raf.setLength(0);
+            index.map(HEADER_BYTES + INITIAL_RECORDS * RECORD_BYTES);
+            index.writeHeader();
+            index.map.force();
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+        return index;
+    }
+
+    /** Reads an existing index, up to its last intact record. */
+    public static SegmentIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < HEADER_BYTES) throw new IOException("Truncated index " + file.getName());
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException("Not a segment index: " + file.getName());
+            }
+            map.position(8);
+            boolean trimSilence = map.get() != 0;
+            String profileName = readString(map);
+            File outputDir = new File(readString(map));
+
+            SegmentIndex index = new SegmentIndex(file, raf, profileName, trimSilence, outputDir);
+            index.map = map;
+            index.readRecords();
+            return index;
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /** Session id the index belongs to, from its file name. */
+    public String getSessionId() {
+        String name = file.getName();
+        return name.endsWith(SUFFIX) ? name.substring(0, name.length() - SUFFIX.length()) : name;
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    public boolean isTrimSilence() {
+        return trimSilence;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /** Whether the session was finished normally, i.e. its last segment was handed over. */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /** Records a finished segment; its offset follows on from the previous one. */
+    public void append(int segmentIndex, long durationMs, long length, int crc) throws IOException {
+        long offsetMs = 0;
+        if (!entries.isEmpty()) {
+            Entry previous = entries.get(entries.size() - 1);
+            offsetMs = previous.offsetMs + previous.durationMs;
+        }
+        writeRecord(TYPE_SEGMENT, segmentIndex, offsetMs, durationMs, length, crc);
+        entries.add(new Entry(segmentIndex, offsetMs, durationMs, length, crc));
+    }
+
+    public void markEnded() throws IOException {
+        if (ended) return;
+        writeRecord(TYPE_END, 0, 0, 0, 0, 0);
+        ended = true;
+    }
+
+    /**
+     * The entries whose segment files are still there with the length recorded, stopping at the
+     * first one that isn't. Only the last of them, the one nearest the crash, is read and checked
+     * against its CRC and dropped if it doesn't match; the rest are checked by size, so this costs
+     * the same for an hour as for a minute.
+     */
+    public List<Entry> intactEntries(SegmentFiles files) throws IOException {
+        List<Entry> intact = new ArrayList<>();
+        for (Entry entry : entries) {
+            File segment = files.segmentFile(entry.index);
+            if (!segment.isFile() || segment.length() != entry.length) break;
+            intact.add(entry);
+        }
+        if (!intact.isEmpty()) {
+            Entry last = intact.get(intact.size() - 1);
+            if (crc32(files.segmentFile(last.index)) != last.crc) intact.remove(intact.size() - 1);
+        }
+        return intact;
+    }
+
+    /** Maps a segment number to its file, as the recorder named it. */
+    public interface SegmentFiles {
+        File segmentFile(int index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    public static int crc32(File segment) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(segment)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private void writeHeader() throws IOException {
+        map.position(0);
+        map.putInt(MAGIC);
+        map.putInt(VERSION);
+        map.put((byte) (trimSilence ? 1 : 0));
+        writeString(map, profileName);
+        writeString(map, outputDir.getAbsolutePath());
+        if (map.position() > HEADER_BYTES) throw new IOException("Index header too long");
+    }
+
+    private void readRecords() {
+        int capacity = (map.capacity() - HEADER_BYTES) / RECORD_BYTES;
+        byte[] record = new byte[RECORD_BYTES];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < capacity; i++) {
+            map.position(HEADER_BYTES + i * RECORD_BYTES);
+            map.get(record);
+            crc.reset();
+            crc.update(record, 0, RECORD_BYTES - 4);
+            map.position(HEADER_BYTES + i * RECORD_BYTES);
+            int type = map.getInt();
+            if (type == 0 || (int) crc.getValue() != map.getInt(HEADER_BYTES + i * RECORD_BYTES + RECORD_BYTES - 4)) {
+                break;
+            }
+            recordCount++;
+            if (type == TYPE_END) {
+                ended = true;
+                continue;
+            }
+            int segmentIndex = map.getInt();
+            long offsetMs = map.getLong();
+            long durationMs = map.getLong();
+            long length = map.getLong();
+            entries.add(new Entry(segmentIndex, offsetMs, durationMs, length, map.getInt()));
+        }
+    }
+
+    private void writeRecord(int type, int segmentIndex, long offsetMs, long durationMs, long length, int contentCrc)
+            throws IOException {
+        int position = HEADER_BYTES + recordCount * RECORD_BYTES;
+        if (position + RECORD_BYTES > map.capacity()) {
+            map(HEADER_BYTES + 2L * (map.capacity() - HEADER_BYTES));
+        }
+        map.position(position);
+        map.putInt(type);
+        map.putInt(segmentIndex);
+        map.putLong(offsetMs);
+        map.putLong(durationMs);
+        map.putLong(length);
+        map.putInt(contentCrc);
+
+        byte[] record = new byte[RECORD_BYTES - 4];
+        map.position(position);
+        map.get(record);
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        map.putInt((int) crc.getValue());
+        map.force();
+        recordCount++;
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) throw new IOException("Index too large");
+        raf.setLength(size);
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static void writeString(MappedByteBuffer map, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        map.putShort((short) bytes.length);
+        map.put(bytes);
+    }
+
+    private static String readString(MappedByteBuffer map) {
+        byte[] bytes = new byte[map.getShort()];
+        map.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
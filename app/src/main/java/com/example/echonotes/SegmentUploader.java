@@ -0,0 +1,168 @@
+package com.example.echonotes;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Uploads one segment of a recording session. {@link UploadWorker} runs it once per segment, in
+ * order, from the session's persistent upload queue.
+ *
+ * Every segment carries the session id and its index in its metadata; the server replies with
+ * the session's client_id once the segment marked as last has been received. Segments go through
+ * {@link ResumableUploader} so an interrupted upload only resends what the server hasn't
+ * acknowledged, falling back to a single multipart POST if the server has no session endpoint.
+ *
+ * Segments also carry their SHA-256, which the server indexes. {@code GET {upload}/hash/{sha256}}
+ * answers 200 for content it already holds, with the session's client_id once that segment
+ * finished a session, and 404 otherwise, so a segment the server has seen needn't be sent again.
+ * Instead {@code POST {upload}/hash/{sha256}/attach} with the segment's metadata files the stored
+ * content under this session and index, and answers as an upload would.
+ */
+public class SegmentUploader {
+
+    private static final String TAG = "SegmentUploader";
+
+    private final String uploadUrl;
+    private final String sessionId;
+    private final ResumableUploader resumableUploader;
+
+    public SegmentUploader(String uploadUrl, String sessionId, UploadCheckpointStore checkpointStore) {
+        this.uploadUrl = uploadUrl;
+        this.sessionId = sessionId;
+        this.resumableUploader = new ResumableUploader(uploadUrl + "/sessions", checkpointStore);
+    }
+
+    /**
+     * Asks whether the server already holds content with this hash.
+     *
+     * @return the server's record for it, or null if it has none
+     */
+    public JSONObject lookup(String sha256) throws IOException, JSONException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(uploadUrl + "/hash/" + sha256).openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setUseCaches(false);
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                // 404 is the usual "never seen it"; anything else means there's no lookup to rely on.
+                if (responseCode != HttpURLConnection.HTTP_NOT_FOUND) {
+                    Log.d(TAG, "Hash lookup unavailable: " + responseCode);
+                }
+                return null;
+            }
+            return readJson(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Adds content the server already holds to this session as segment {@code index}.
+     *
+     * @return the server's reply, as for {@link #upload}, or null if it can't attach the content
+     * and the segment has to be uploaded
+     */
+    public JSONObject attach(int index, boolean isLast, String sha256, AudioProfile profile)
+            throws IOException, JSONException {
+        byte[] body = metadata(index, isLast, sha256, profile).toString().getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL(uploadUrl + "/hash/" + sha256 + "/attach").openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                Log.d(TAG, "Server can't attach segment " + index + ", uploading it");
+                return null;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Attach failed: " + responseCode);
+            }
+            Log.d(TAG, "Segment " + index + " attached to session " + sessionId);
+            return readJson(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public JSONObject upload(File segment, int index, boolean isLast, String sha256, AudioProfile profile,
+                             MultipartUploader.ProgressListener progress) throws IOException, JSONException {
+        JSONObject metadata = metadata(index, isLast, sha256, profile);
+
+        try {
+            JSONObject response = resumableUploader.upload(segment, profile.mimeType, metadata, progress);
+            Log.d(TAG, "Segment " + index + " uploaded for session " + sessionId);
+            return response;
+        } catch (ResumableUploader.UnsupportedException e) {
+            Log.d(TAG, "Server has no upload sessions, sending segment " + index + " in one request");
+            return uploadMultipart(segment, profile.mimeType, metadata, progress);
+        }
+    }
+
+    private JSONObject metadata(int index, boolean isLast, String sha256, AudioProfile profile) throws JSONException {
+        JSONObject metadata = new JSONObject();
+        metadata.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        metadata.put("session_id", sessionId);
+        metadata.put("segment_index", index);
+        metadata.put("is_last", isLast);
+        metadata.put("sha256", sha256);
+        metadata.put("audio_profile", profile.name());
+        metadata.put("sample_rate", profile.sampleRate);
+        metadata.put("bit_rate", profile.bitRate);
+        return metadata;
+    }
+
+    private JSONObject uploadMultipart(File segment, String mimeType, JSONObject metadata,
+                                      MultipartUploader.ProgressListener progress)
+            throws IOException, JSONException {
+        MultipartUploader uploader = new MultipartUploader()
+                .addFilePart("file", segment, mimeType)
+                .addFormField("metadata", metadata.toString());
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(uploadUrl).openConnection();
+        try {
+            uploader.configure(connection);
+            connection.setRequestProperty("Connection", "Keep-Alive");
+            uploader.writeTo(connection.getOutputStream(), progress);
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Upload failed: " + responseCode);
+            }
+
+            return readJson(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static JSONObject readJson(HttpURLConnection connection) throws IOException, JSONException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+        StringBuilder response = new StringBuilder();
+        String inputLine;
+        while ((inputLine = in.readLine()) != null) {
+            response.append(inputLine);
+        }
+        in.close();
+        return new JSONObject(response.toString());
+    }
+}
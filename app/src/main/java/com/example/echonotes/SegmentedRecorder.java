@@ -0,0 +1,204 @@
+package com.example.echonotes;
+
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Records a session as a series of fixed-duration segments so finished segments can be uploaded
+ * while recording continues.
+ *
+ * On API 26+ the recorder switches MPEG-4 and 3GPP files in place with
+ * {@link MediaRecorder#setNextOutputFile}, which leaves no gap in the audio. The switch only
+ * happens when the file reaches the recorder's max file size, so segments are cut by size: the
+ * profile's bit rate times the segment duration. Older devices, and containers that can't switch,
+ * restart the recorder on a timer at each boundary.
+ */
+public class SegmentedRecorder implements SessionRecorder {
+
+    private static final String TAG = "SegmentedRecorder";
+    public static final long DEFAULT_SEGMENT_DURATION_MS = 60_000;
+
+    public interface SegmentListener {
+        void onSegmentFinished(File segment, int index, boolean isLast);
+
+        void onError(Exception e);
+
+        /** The recording ended without a last segment; nothing more is reported. */
+        void onAborted(Exception e);
+    }
+
+    private final File outputDir;
+    private final String sessionId;
+    private final long segmentDurationMs;
+    private final AudioProfile profile;
+    private final SegmentListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MediaRecorder mediaRecorder;
+    private File currentSegment;
+    private File pendingSegment;
+    private int segmentIndex;
+
+    private final Runnable rollRunnable = this::rollSegment;
+
+    public SegmentedRecorder(File outputDir, String sessionId, long segmentDurationMs, AudioProfile profile,
+                             SegmentListener listener) {
+        this.outputDir = outputDir;
+        this.sessionId = sessionId;
+        this.segmentDurationMs = segmentDurationMs;
+        this.profile = profile;
+        this.listener = listener;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public void start() throws IOException {
+        segmentIndex = 0;
+        currentSegment = segmentFile(segmentIndex);
+        mediaRecorder = createRecorder(currentSegment);
+        mediaRecorder.start();
+        if (!switchesInPlace()) {
+            handler.postDelayed(rollRunnable, segmentDurationMs);
+        }
+    }
+
+    @Override
+    public void stop() {
+        handler.removeCallbacks(rollRunnable);
+        if (mediaRecorder == null) return;
+
+        boolean stopped = false;
+        try {
+            mediaRecorder.stop();
+            stopped = true;
+        } finally {
+            mediaRecorder.release();
+            mediaRecorder = null;
+            // A queued next file that never started is empty; only the current segment has audio.
+            if (pendingSegment != null) {
+                pendingSegment.delete();
+                pendingSegment = null;
+            }
+            if (!stopped) currentSegment.delete();
+        }
+        listener.onSegmentFinished(currentSegment, segmentIndex, true);
+    }
+
+    /** Stops without reporting a final segment, e.g. when the host is torn down. */
+    @Override
+    public void release() {
+        handler.removeCallbacks(rollRunnable);
+        if (mediaRecorder != null) {
+            try {
+                mediaRecorder.stop();
+            } catch (Exception ignored) {}
+            mediaRecorder.release();
+            mediaRecorder = null;
+        }
+    }
+
+    private boolean switchesInPlace() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && profile.supportsNextOutputFile();
+    }
+
+    /** Bytes of audio in one segment at the profile's bit rate. */
+    private long segmentBytes() {
+        return profile.bitRate * segmentDurationMs / 8000;
+    }
+
+    /** Stops the recorder and starts a new one on the next file; used where files can't be switched in place. */
+    private void rollSegment() {
+        if (mediaRecorder == null) return;
+
+        try {
+            restartOnNextSegment(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to roll segment", e);
+            listener.onError(e);
+            return;
+        }
+
+        handler.postDelayed(rollRunnable, segmentDurationMs);
+    }
+
+    private void restartOnNextSegment(boolean stopFirst) throws IOException {
+        if (stopFirst) mediaRecorder.stop();
+        mediaRecorder.release();
+        File finished = currentSegment;
+        int finishedIndex = segmentIndex;
+
+        // A file queued for an in-place switch that never happened is reused for the new recorder.
+        pendingSegment = null;
+        segmentIndex++;
+        currentSegment = segmentFile(segmentIndex);
+        mediaRecorder = createRecorder(currentSegment);
+        mediaRecorder.start();
+        listener.onSegmentFinished(finished, finishedIndex, false);
+    }
+
+    private void onInfo(int what) {
+        if (what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_FILESIZE_APPROACHING && switchesInPlace()) {
+            if (pendingSegment != null) return;
+            File next = segmentFile(segmentIndex + 1);
+            try {
+                mediaRecorder.setNextOutputFile(next);
+                pendingSegment = next;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to queue the next segment", e);
+            }
+        } else if (what == MediaRecorder.MEDIA_RECORDER_INFO_NEXT_OUTPUT_FILE_STARTED && pendingSegment != null) {
+            File finished = currentSegment;
+            int finishedIndex = segmentIndex;
+
+            segmentIndex++;
+            currentSegment = pendingSegment;
+            pendingSegment = null;
+            listener.onSegmentFinished(finished, finishedIndex, false);
+        } else if (what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_FILESIZE_REACHED) {
+            // The next file wasn't queued in time and the recorder has stopped itself.
+            try {
+                restartOnNextSegment(false);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to restart after the file size limit", e);
+                mediaRecorder = null;
+                listener.onError(e);
+            }
+        }
+    }
+
+    private MediaRecorder createRecorder(File outputFile) throws IOException {
+        MediaRecorder recorder = new MediaRecorder();
+        recorder.setAudioSource(MediaRecorder.AudioSource.MIC);
+        recorder.setOutputFormat(profile.outputFormat);
+        recorder.setOutputFile(outputFile.getAbsolutePath());
+        recorder.setAudioEncoder(profile.audioEncoder);
+        recorder.setAudioChannels(1);
+        recorder.setAudioEncodingBitRate(profile.bitRate);
+        recorder.setAudioSamplingRate(profile.sampleRate);
+        if (switchesInPlace()) {
+            // Reaching it is what makes the recorder move on to the file given to setNextOutputFile.
+            recorder.setMaxFileSize(segmentBytes());
+        }
+        recorder.setOnInfoListener((mr, what, extra) -> onInfo(what));
+        recorder.prepare();
+        return recorder;
+    }
+
+    private File segmentFile(int index) {
+        return segmentFile(outputDir, sessionId, index, profile);
+    }
+
+    static File segmentFile(File outputDir, String sessionId, int index, AudioProfile profile) {
+        return new File(outputDir, String.format(Locale.US, "audio_%s_%03d%s", sessionId, index, profile.extension));
+    }
+}
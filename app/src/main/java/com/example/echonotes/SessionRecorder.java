@@ -0,0 +1,19 @@
+package com.example.echonotes;
+
+import java.io.IOException;
+
+/** Records one session as segments, reporting each to a {@link SegmentedRecorder.SegmentListener}. */
+public interface SessionRecorder {
+
+    void start() throws IOException;
+
+    /**
+     * Stops and reports the last segment.
+     *
+     * @throws RuntimeException if the recorder couldn't finish it; nothing is reported then
+     */
+    void stop();
+
+    /** Stops when the host is torn down, reporting nothing more if the recorder can avoid it. */
+    void release();
+}
@@ -0,0 +1,227 @@
+package com.example.echonotes;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cuts long silences out of a recorded segment before it is uploaded.
+ *
+ * The audio is decoded once only to measure the level of each 20 ms frame for {@link EnergyVad};
+ * no PCM is kept. The kept spans are then copied across as the original encoded samples, without
+ * re-encoding, which works because speech codec frames decode independently. The returned
+ * {@link OffsetMap} maps the trimmed timeline back to the recording.
+ */
+public class SilenceTrimmer {
+
+    private static final String TAG = "SilenceTrimmer";
+    private static final long TIMEOUT_US = 10_000;
+    private static final int DEFAULT_SAMPLE_BUFFER = 256 * 1024;
+    // Cutting less than this isn't worth writing a second file.
+    private static final double MIN_SAVING = 0.05;
+
+    public static class Result {
+        /** What to upload: the trimmed copy, or the input if nothing was worth cutting. */
+        public final File file;
+        public final OffsetMap offsets;
+        public final long originalDurationMs;
+
+        Result(File file, OffsetMap offsets, long originalDurationMs) {
+            this.file = file;
+            this.offsets = offsets;
+            this.originalDurationMs = originalDurationMs;
+        }
+    }
+
+    private final EnergyVad vad;
+
+    public SilenceTrimmer(EnergyVad vad) {
+        this.vad = vad;
+    }
+
+    public Result trim(File input, File output) throws IOException {
+        long durationMs;
+        float[] levels = null;
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(input.getAbsolutePath());
+            MediaFormat format = extractor.getTrackFormat(selectAudioTrack(extractor));
+            durationMs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) / 1000 : -1;
+            // MediaMuxer can't write 3GPP before API 26 (nor Ogg before 29), so older devices upload untrimmed.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                levels = frameLevels(extractor, format);
+            }
+        } finally {
+            extractor.release();
+        }
+        if (durationMs < 0) {
+            if (levels == null) throw new IOException("Unknown duration for " + input.getName());
+            durationMs = (long) levels.length * EnergyVad.FRAME_MS;
+        }
+        if (levels == null) {
+            return new Result(input, OffsetMap.identity(durationMs), durationMs);
+        }
+
+        List<long[]> spans = vad.keptSpans(levels);
+        OffsetMap offsets = OffsetMap.fromKeptSpans(spans);
+        if (spans.isEmpty() || offsets.trimmedDurationMs() > durationMs * (1 - MIN_SAVING)) {
+            return new Result(input, OffsetMap.identity(durationMs), durationMs);
+        }
+
+        File temp = new File(output.getPath() + ".tmp");
+        try {
+            remux(input, temp, offsets);
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Could not move trimmed audio to " + output);
+        }
+        Log.d(TAG, input.getName() + ": kept " + offsets.trimmedDurationMs() + " of " + durationMs + " ms");
+        return new Result(output, offsets, durationMs);
+    }
+
+    private static int selectAudioTrack(MediaExtractor extractor) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return i;
+            }
+        }
+        throw new IOException("No audio track");
+    }
+
+    private static float[] frameLevels(MediaExtractor extractor, MediaFormat format) throws IOException {
+        MediaCodec decoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+        decoder.configure(format, null, null, 0);
+        decoder.start();
+
+        FrameMeter meter = null;
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        boolean outputDone = false;
+        try {
+            while (!outputDone) {
+                if (!inputDone) {
+                    int inputIndex = decoder.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer inputBuffer = decoder.getInputBuffer(inputIndex);
+                        int size = extractor.readSampleData(inputBuffer, 0);
+                        if (size < 0) {
+                            decoder.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            decoder.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = decoder.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    meter = new FrameMeter(decoder.getOutputFormat());
+                } else if (outputIndex >= 0) {
+                    if (meter == null) meter = new FrameMeter(decoder.getOutputFormat());
+                    ByteBuffer outputBuffer = decoder.getOutputBuffer(outputIndex);
+                    outputBuffer.position(info.offset);
+                    outputBuffer.limit(info.offset + info.size);
+                    meter.add(outputBuffer.order(ByteOrder.nativeOrder()).asShortBuffer());
+                    decoder.releaseOutputBuffer(outputIndex, false);
+                    outputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                }
+            }
+        } finally {
+            decoder.stop();
+            decoder.release();
+        }
+        return meter == null ? new float[0] : meter.levels();
+    }
+
+    private static void remux(File input, File output, OffsetMap offsets) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaMuxer muxer = null;
+        try {
+            extractor.setDataSource(input.getAbsolutePath());
+            MediaFormat format = extractor.getTrackFormat(selectAudioTrack(extractor));
+            muxer = new MediaMuxer(output.getAbsolutePath(), muxerFormatFor(input));
+            int track = muxer.addTrack(format);
+            muxer.start();
+
+            int capacity = format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                    ? format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) : DEFAULT_SAMPLE_BUFFER;
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int size;
+            while ((size = extractor.readSampleData(buffer, 0)) >= 0) {
+                long sampleTimeUs = extractor.getSampleTime();
+                long trimmedMs = offsets.toTrimmed(sampleTimeUs / 1000);
+                if (trimmedMs >= 0) {
+                    int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                            ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+                    info.set(0, size, trimmedMs * 1000 + sampleTimeUs % 1000, flags);
+                    muxer.writeSampleData(track, buffer, info);
+                }
+                extractor.advance();
+            }
+            muxer.stop();
+        } finally {
+            extractor.release();
+            if (muxer != null) muxer.release();
+        }
+    }
+
+    private static int muxerFormatFor(File input) throws IOException {
+        String name = input.getName();
+        if (name.endsWith(".3gp")) return MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP;
+        if (name.endsWith(".ogg")) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) throw new IOException("Can't write Ogg before API 29");
+            return MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG;
+        }
+        return MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+    }
+
+    /** Turns decoded PCM into one level per {@link EnergyVad#FRAME_MS} frame, across buffers. */
+    private static class FrameMeter {
+        private final short[] frame;
+        private int filled = 0;
+        private float[] levels = new float[256];
+        private int count = 0;
+
+        FrameMeter(MediaFormat format) {
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            frame = new short[sampleRate * channels * EnergyVad.FRAME_MS / 1000];
+        }
+
+        void add(ShortBuffer pcm) {
+            while (pcm.hasRemaining()) {
+                int n = Math.min(pcm.remaining(), frame.length - filled);
+                pcm.get(frame, filled, n);
+                filled += n;
+                if (filled == frame.length) {
+                    if (count == levels.length) levels = Arrays.copyOf(levels, count * 2);
+                    levels[count++] = EnergyVad.levelDb(frame, 0, frame.length);
+                    filled = 0;
+                }
+            }
+        }
+
+        float[] levels() {
+            return Arrays.copyOf(levels, count);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.echonotes;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class TranscriptAdapter extends RecyclerView.Adapter<TranscriptAdapter.UtteranceViewHolder> {
+
+    private final List<Utterance> utterances = new ArrayList<>();
+    private final int firstSpeakerColor;
+    private final int otherSpeakerColor;
+
+    public TranscriptAdapter(Context context) {
+        // Resolved once here rather than per row.
+        this.firstSpeakerColor = ContextCompat.getColor(context, android.R.color.darker_gray);
+        this.otherSpeakerColor = ContextCompat.getColor(context, android.R.color.white);
+    }
+
+    public void setUtterances(List<Utterance> newUtterances) {
+        utterances.clear();
+        utterances.addAll(newUtterances);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Brings the list up to date with {@code newUtterances}, matching rows by index. Transcripts
+     * grow at the end while they are processed, so usually only the new rows are inserted and
+     * bound; a row whose utterance was revised is rebound in place.
+     */
+    public void updateUtterances(List<Utterance> newUtterances) {
+        int shown = utterances.size();
+        int size = newUtterances.size();
+        for (int i = 0; i < Math.min(shown, size); i++) {
+            Utterance next = newUtterances.get(i);
+            if (!sameContent(utterances.get(i), next)) {
+                utterances.set(i, next);
+                notifyItemChanged(i);
+            }
+        }
+        if (size > shown) {
+            utterances.addAll(newUtterances.subList(shown, size));
+            notifyItemRangeInserted(shown, size - shown);
+        } else if (size < shown) {
+            utterances.subList(size, shown).clear();
+            notifyItemRangeRemoved(size, shown - size);
+        }
+    }
+
+    private static boolean sameContent(Utterance a, Utterance b) {
+        return a == b || (a.getStartMs() == b.getStartMs() && a.getEndMs() == b.getEndMs()
+                && Objects.equals(a.getSpeaker(), b.getSpeaker()) && Objects.equals(a.getText(), b.getText()));
+    }
+
+    public void clear() {
+        utterances.clear();
+        notifyDataSetChanged();
+    }
+
+    public List<Utterance> getUtterances() {
+        return utterances;
+    }
+
+    @NonNull
+    @Override
+    public UtteranceViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_utterance, parent, false);
+        return new UtteranceViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull UtteranceViewHolder holder, int position) {
+        holder.bind(utterances.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return utterances.size();
+    }
+
+    class UtteranceViewHolder extends RecyclerView.ViewHolder {
+        CardView cardView;
+        TextView tvSpeaker;
+        TextView tvText;
+
+        public UtteranceViewHolder(@NonNull View itemView) {
+            super(itemView);
+            cardView = (CardView) itemView;
+            tvSpeaker = itemView.findViewById(R.id.tvSpeaker);
+            tvText = itemView.findViewById(R.id.tvUtteranceText);
+        }
+
+        public void bind(Utterance utterance) {
+            String speaker = utterance.getSpeaker();
+            tvSpeaker.setText(speaker);
+            tvText.setText(utterance.getText());
+            cardView.setCardBackgroundColor(speaker == null || speaker.endsWith("A") ? firstSpeakerColor : otherSpeakerColor);
+        }
+    }
+}
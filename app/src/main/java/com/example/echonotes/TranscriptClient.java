@@ -0,0 +1,232 @@
+package com.example.echonotes;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client for the transcript endpoint, {@code GET /transcript/{client_id}}, which answers either a
+ * JSON status document or, for {@code Accept: text/event-stream}, a push channel of status events.
+ *
+ * Status polls are conditional: the last ETag/Last-Modified seen for each client_id is sent back,
+ * and a {@code 304 Not Modified} is answered from memory without reading or parsing a body.
+ * Bodies are decoded straight off the socket by {@link TranscriptDecoder}.
+ *
+ * Servers that have the batch status endpoint, {@code POST} {@code {"client_ids": [...]}}, answer
+ * {@code {"statuses": {"<client_id>": "<status>", ...}}} for many jobs in one round trip, leaving
+ * out ids they don't know.
+ *
+ * While a job is processing the server may already return the utterances it has so far, and report
+ * how many there are: as {@code "utterances": {"<client_id>": n}} next to the batch statuses, and
+ * as an {@code "utterances"} field on push events.
+ */
+public class TranscriptClient {
+
+    /** The server has no batch status endpoint; ask about each job on its own. */
+    public static class UnsupportedException extends IOException {
+        public UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Validators {
+        final String etag;
+        final String lastModified;
+        final String status;
+
+        Validators(String etag, String lastModified, String status) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.status = status;
+        }
+    }
+
+    private final String transcriptUrl;
+    private final String statusUrl;
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+    public TranscriptClient(String transcriptUrl) {
+        this(transcriptUrl, null);
+    }
+
+    public TranscriptClient(String transcriptUrl, String statusUrl) {
+        this.transcriptUrl = transcriptUrl;
+        this.statusUrl = statusUrl;
+    }
+
+    public boolean supportsBatch() {
+        return statusUrl != null;
+    }
+
+    public TranscriptResult fetch(String clientId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(transcriptUrl + clientId).openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setUseCaches(false);
+
+            Validators previous = validators.get(clientId);
+            if (previous != null) {
+                if (previous.etag != null) connection.setRequestProperty("If-None-Match", previous.etag);
+                if (previous.lastModified != null) connection.setRequestProperty("If-Modified-Since", previous.lastModified);
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                return TranscriptResult.notModified(previous.status);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Transcript request failed: " + responseCode);
+            }
+
+            List<Utterance> transcript = new ArrayList<>();
+            TranscriptDecoder.Header header;
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                header = new TranscriptDecoder().decode(in, transcript::add);
+            }
+
+            String status = header.status;
+            if (status == null) {
+                throw new IOException("Transcript response has no status");
+            }
+            if (TranscriptResult.STATUS_COMPLETED.equals(status)) {
+                // Nothing polls a finished job again, so its validators aren't worth keeping.
+                validators.remove(clientId);
+                return new TranscriptResult(status, transcript, header.summary);
+            }
+            rememberValidators(clientId, connection, status);
+            // A partial transcript, if the server has started on one.
+            return new TranscriptResult(status, transcript.isEmpty() ? null : transcript, null);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Asks for the status of every job in {@code clientIds} with a single request.
+     *
+     * @return status by client_id; ids the server doesn't know are missing
+     */
+    public Map<String, String> fetchStatuses(Collection<String> clientIds) throws IOException {
+        return fetchStatuses(clientIds, null);
+    }
+
+    /**
+     * @param utteranceCounts if not null, filled with how many utterances the server has for each
+     *                        job that reported a count
+     */
+    public Map<String, String> fetchStatuses(Collection<String> clientIds, Map<String, Integer> utteranceCounts)
+            throws IOException {
+        if (statusUrl == null) {
+            throw new UnsupportedException("No batch status endpoint configured");
+        }
+
+        byte[] body;
+        try {
+            body = new JSONObject().put("client_ids", new JSONArray(clientIds)).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            throw new IOException("Could not build status request", e);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(statusUrl).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_BAD_METHOD) {
+                throw new UnsupportedException("Batch status request failed: " + responseCode);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Batch status request failed: " + responseCode);
+            }
+
+            try (JsonReader reader = new JsonReader(new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)))) {
+                return readStatuses(reader, utteranceCounts);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Map<String, String> readStatuses(JsonReader reader, Map<String, Integer> utteranceCounts)
+            throws IOException {
+        Map<String, String> statuses = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+            } else if ("statuses".equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String clientId = reader.nextName();
+                    if (reader.peek() == JsonToken.STRING) {
+                        statuses.put(clientId, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if ("utterances".equals(name) && utteranceCounts != null) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String clientId = reader.nextName();
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        utteranceCounts.put(clientId, reader.nextInt());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return statuses;
+    }
+
+    public void forget(String clientId) {
+        validators.remove(clientId);
+    }
+
+    private void rememberValidators(String clientId, HttpURLConnection connection, String status) {
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if (etag != null || lastModified != null) {
+            validators.put(clientId, new Validators(etag, lastModified, status));
+        } else {
+            validators.remove(clientId);
+        }
+    }
+
+    public TranscriptEventStream openEventStream(String clientId) throws IOException {
+        return TranscriptEventStream.open(transcriptUrl + clientId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.echonotes;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes a transcript response token by token instead of building a JSON tree.
+ *
+ * Only one utterance is ever materialised at a time before it is handed to the sink, so decoding a
+ * two-hour meeting doesn't hold the raw body, a parsed tree and the final model on the heap at
+ * once. Speaker labels repeat on every utterance and are shared between them.
+ */
+public class TranscriptDecoder {
+
+    public interface UtteranceSink {
+        void onUtterance(Utterance utterance);
+    }
+
+    public static class Header {
+        public String status;
+        public String summary;
+    }
+
+    private static final String DEFAULT_SPEAKER = "A";
+
+    private final Map<String, String> speakers = new HashMap<>();
+
+    /**
+     * Reads a {@code {"status", "summary", "transcript": [...]}} document, in any field order,
+     * passing each utterance to {@code sink} as soon as it has been read. Utterance {@code start}
+     * and {@code end} are milliseconds, possibly fractional; a missing speaker is speaker A, as on
+     * the live channel.
+     */
+    public Header decode(Reader in, UtteranceSink sink) throws IOException {
+        Header header = new Header();
+        try (JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "status":
+                        header.status = nextString(reader);
+                        break;
+                    case "summary":
+                        header.summary = nextString(reader);
+                        break;
+                    case "transcript":
+                        readUtterances(reader, sink);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return header;
+    }
+
+    private void readUtterances(JsonReader reader, UtteranceSink sink) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            sink.onUtterance(readUtterance(reader));
+        }
+        reader.endArray();
+    }
+
+    private Utterance readUtterance(JsonReader reader) throws IOException {
+        String speaker = DEFAULT_SPEAKER;
+        String text = "";
+        long start = -1;
+        long end = -1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "speaker":
+                    String name = nextString(reader);
+                    speaker = name == null ? DEFAULT_SPEAKER : shared(name);
+                    break;
+                case "text":
+                    text = nextString(reader);
+                    break;
+                case "start":
+                    start = Math.round(reader.nextDouble());
+                    break;
+                case "end":
+                    end = Math.round(reader.nextDouble());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Utterance(speaker, text, start, end);
+    }
+
+    private String shared(String speaker) {
+        String existing = speakers.get(speaker);
+        if (existing != null) return existing;
+        speakers.put(speaker, speaker);
+        return speaker;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
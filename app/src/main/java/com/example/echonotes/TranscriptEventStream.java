@@ -0,0 +1,112 @@
+package com.example.echonotes;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server-Sent Events channel on {@code GET /transcript/{client_id}}, opened with
+ * {@code Accept: text/event-stream}.
+ *
+ * The server pushes an event whenever the job's status changes, e.g.
+ * {@code event: status} / {@code data: {"status":"completed"}}, and sends comment lines as
+ * keep-alives. A server that doesn't speak SSE answers with plain JSON, which {@link #open}
+ * reports as {@link UnsupportedException} so callers can stay on polling.
+ */
+public class TranscriptEventStream implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    // The server sends a keep-alive well within this, so a silent minute means the channel is dead.
+    private static final int READ_TIMEOUT_MS = 60_000;
+
+    public static class UnsupportedException extends IOException {
+        public UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    public static class Event {
+        public final String type;
+        public final String data;
+
+        Event(String type, String data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    private final HttpURLConnection connection;
+    private final BufferedReader reader;
+
+    private TranscriptEventStream(HttpURLConnection connection, BufferedReader reader) {
+        this.connection = connection;
+        this.reader = reader;
+    }
+
+    public static TranscriptEventStream open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setRequestProperty("Cache-Control", "no-cache");
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+
+        int responseCode = connection.getResponseCode();
+        String contentType = connection.getContentType();
+        if (responseCode != HttpURLConnection.HTTP_OK
+                || contentType == null || !contentType.startsWith("text/event-stream")) {
+            connection.disconnect();
+            throw new UnsupportedException("No event stream: " + responseCode + " " + contentType);
+        }
+
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        return new TranscriptEventStream(connection, reader);
+    }
+
+    /**
+     * Blocks until the next complete event arrives.
+     *
+     * @return the event, or null once the server closes the stream
+     */
+    public Event nextEvent() throws IOException {
+        String type = "message";
+        StringBuilder data = null;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data != null) return new Event(type, data.toString());
+                type = "message";
+                continue;
+            }
+            if (line.startsWith(":")) continue;
+
+            int colon = line.indexOf(':');
+            String field = colon == -1 ? line : line.substring(0, colon);
+            String value = colon == -1 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) value = value.substring(1);
+
+            if ("event".equals(field)) {
+                type = value;
+            } else if ("data".equals(field)) {
+                if (data == null) {
+                    data = new StringBuilder(value);
+                } else {
+                    data.append('\n').append(value);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // Disconnecting from another thread unblocks a pending read.
+        connection.disconnect();
+    }
+}
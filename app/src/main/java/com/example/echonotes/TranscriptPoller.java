@@ -0,0 +1,335 @@
+package com.example.echonotes;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for transcript jobs to complete, with at most one watcher per client_id.
+ *
+ * A watcher first listens on the server's push channel ({@link TranscriptEventStream}) and only
+ * fetches the transcript once the server says it's done. If the channel can't be opened or drops,
+ * it falls back to polling. All polls share one small scheduled executor. The delay between
+ * requests grows exponentially with jitter, so long jobs cost a handful of requests instead of one
+ * every few seconds, and a watcher gives up once the max wait has passed.
+ *
+ * If the server has a batch status endpoint, jobs that are being polled share a single tick that
+ * asks about all of them in one request, so each tick costs one request however many jobs are in
+ * flight. Only a job the batch reports as completed is fetched on its own, to get its transcript.
+ *
+ * Jobs that report more utterances than their listener has seen are fetched early as well, and the
+ * partial transcript goes to {@link Listener#onPartial}, so text shows up while the rest is still
+ * being processed.
+ */
+public class TranscriptPoller {
+
+    private static final String TAG = "TranscriptPoller";
+    private static final long INITIAL_DELAY_MS = 2_000;
+    private static final long MAX_DELAY_MS = 30_000;
+    private static final long MAX_WAIT_MS = 30 * 60_000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "transcript-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Push channels block on reads for as long as a job runs, so they get threads of their own.
+    private static final ExecutorService PUSH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "transcript-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface Listener {
+        void onCompleted(TranscriptResult result);
+
+        void onTimedOut();
+
+        /** The utterances transcribed so far, each time the server has more of them. */
+        default void onPartial(TranscriptResult partial) {
+        }
+    }
+
+    private final TranscriptClient client;
+    private final boolean usePush;
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final long maxWaitMs;
+    private final Map<String, Poll> polls = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    // Jobs waiting on the shared batch tick, and the tick itself. Guarded by this.
+    private final Set<Poll> batched = new HashSet<>();
+    private ScheduledFuture<?> batchFuture;
+    private int batchAttempt;
+    private volatile boolean batchSupported;
+
+    public TranscriptPoller(TranscriptClient client) {
+        this(client, true, INITIAL_DELAY_MS, MAX_DELAY_MS, MAX_WAIT_MS);
+    }
+
+    TranscriptPoller(TranscriptClient client, boolean usePush, long initialDelayMs, long maxDelayMs, long maxWaitMs) {
+        this.client = client;
+        this.usePush = usePush;
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxWaitMs = maxWaitMs;
+        this.batchSupported = client.supportsBatch();
+    }
+
+    /**
+     * Starts polling {@code clientId}. If a loop for it is already running, the new listener
+     * replaces the old one instead of starting a second loop.
+     */
+    public synchronized void poll(String clientId, Listener listener) {
+        Poll existing = polls.get(clientId);
+        if (existing != null) {
+            existing.listener = listener;
+            return;
+        }
+
+        Poll poll = new Poll(clientId, listener);
+        polls.put(clientId, poll);
+        if (usePush) {
+            PUSH_EXECUTOR.execute(poll::listenForPush);
+        } else {
+            poll.schedule(0);
+        }
+    }
+
+    public synchronized void cancel(String clientId) {
+        Poll poll = polls.remove(clientId);
+        if (poll != null) poll.cancel();
+        client.forget(clientId);
+    }
+
+    public synchronized void cancelAll() {
+        for (Poll poll : polls.values()) {
+            poll.cancel();
+            client.forget(poll.clientId);
+        }
+        polls.clear();
+    }
+
+    /** Puts a job on the shared tick, bringing the tick forward if it was backed off. */
+    private synchronized void joinBatch(Poll poll) {
+        if (poll.cancelled) return;
+        batched.add(poll);
+        batchAttempt = 0;
+        if (batchFuture == null || batchFuture.getDelay(TimeUnit.MILLISECONDS) > initialDelayMs) {
+            if (batchFuture != null) batchFuture.cancel(false);
+            batchFuture = SCHEDULER.schedule(this::runBatch, initialDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void runBatch() {
+        List<Poll> due;
+        synchronized (this) {
+            batched.removeIf(poll -> poll.cancelled);
+            if (batched.isEmpty()) {
+                batchFuture = null;
+                return;
+            }
+            due = new ArrayList<>(batched);
+        }
+
+        List<String> clientIds = new ArrayList<>();
+        for (Poll poll : due) clientIds.add(poll.clientId);
+        try {
+            Map<String, Integer> utteranceCounts = new HashMap<>();
+            Map<String, String> statuses = client.fetchStatuses(clientIds, utteranceCounts);
+            for (Poll poll : due) {
+                if (TranscriptResult.STATUS_COMPLETED.equals(statuses.get(poll.clientId))) {
+                    synchronized (this) {
+                        batched.remove(poll);
+                    }
+                    // One request per finished job to fetch its transcript; it rejoins on failure.
+                    SCHEDULER.execute(poll);
+                } else if (poll.hasNewUtterances(utteranceCounts.get(poll.clientId))) {
+                    // The job stays on the tick; this only picks up what's been transcribed so far.
+                    SCHEDULER.execute(poll::fetchPartial);
+                }
+            }
+        } catch (TranscriptClient.UnsupportedException e) {
+            Log.d(TAG, "No batch status endpoint, polling each job on its own");
+            batchSupported = false;
+            synchronized (this) {
+                for (Poll poll : batched) poll.schedule(0);
+                batched.clear();
+                batchFuture = null;
+            }
+            return;
+        } catch (IOException e) {
+            Log.e(TAG, "Error polling transcript statuses", e);
+        }
+
+        long now = System.currentTimeMillis();
+        for (Poll poll : due) {
+            if (now - poll.startedAt >= maxWaitMs) {
+                synchronized (this) {
+                    if (!batched.remove(poll)) continue;
+                }
+                poll.timeOut();
+            }
+        }
+
+        synchronized (this) {
+            batchFuture = batched.isEmpty() ? null
+                    : SCHEDULER.schedule(this::runBatch, nextDelay(batchAttempt++), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    long nextDelay(int attempt) {
+        long ceiling = Math.min(maxDelayMs, initialDelayMs << Math.min(attempt, 16));
+        // "Equal jitter": half the backoff is fixed, the other half random, so loops spread out.
+        return ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2));
+    }
+
+    private class Poll implements Runnable {
+        final String clientId;
+        final long startedAt = System.currentTimeMillis();
+        volatile Listener listener;
+        volatile boolean cancelled;
+        int attempt;
+        // Utterances already passed to onPartial.
+        volatile int delivered;
+        ScheduledFuture<?> future;
+        volatile TranscriptEventStream stream;
+
+        Poll(String clientId, Listener listener) {
+            this.clientId = clientId;
+            this.listener = listener;
+        }
+
+        void schedule(long delayMs) {
+            if (cancelled) return;
+            future = SCHEDULER.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(false);
+            TranscriptEventStream current = stream;
+            if (current != null) current.close();
+        }
+
+        /**
+         * Blocks on the push channel until the server reports completion or the channel goes
+         * away. Either way one regular poll follows: it fetches the finished transcript, or starts
+         * the polling fallback.
+         */
+        void listenForPush() {
+            try (TranscriptEventStream eventStream = client.openEventStream(clientId)) {
+                stream = eventStream;
+                // cancel() may have run before the stream was published and found nothing to close.
+                if (cancelled) return;
+                TranscriptEventStream.Event event;
+                while (!cancelled && (event = eventStream.nextEvent()) != null) {
+                    if (isCompleted(event) || System.currentTimeMillis() - startedAt >= maxWaitMs) break;
+                    if (hasNewUtterances(utteranceCount(event))) fetchPartial();
+                }
+            } catch (TranscriptEventStream.UnsupportedException e) {
+                Log.d(TAG, "No push channel for " + clientId + ", polling instead");
+            } catch (IOException e) {
+                if (!cancelled) Log.w(TAG, "Push channel for " + clientId + " dropped, polling instead", e);
+            } finally {
+                stream = null;
+            }
+            schedule(0);
+        }
+
+        private Integer utteranceCount(TranscriptEventStream.Event event) {
+            try {
+                JSONObject data = new JSONObject(event.data);
+                return data.has("utterances") ? data.getInt("utterances") : null;
+            } catch (JSONException e) {
+                return null;
+            }
+        }
+
+        boolean hasNewUtterances(Integer count) {
+            return count != null && count > delivered;
+        }
+
+        /** Fetches the transcript so far and reports it if it has grown; never finishes the job. */
+        void fetchPartial() {
+            if (cancelled) return;
+            try {
+                deliverPartial(client.fetch(clientId));
+            } catch (Exception e) {
+                Log.w(TAG, "Error fetching partial transcript for " + clientId, e);
+            }
+        }
+
+        private void deliverPartial(TranscriptResult result) {
+            List<Utterance> transcript = result.getTranscript();
+            if (cancelled || result.isCompleted() || transcript == null || transcript.size() <= delivered) return;
+            delivered = transcript.size();
+            listener.onPartial(result);
+        }
+
+        private boolean isCompleted(TranscriptEventStream.Event event) {
+            if (TranscriptResult.STATUS_COMPLETED.equals(event.type)) return true;
+            try {
+                return TranscriptResult.STATUS_COMPLETED.equals(new JSONObject(event.data).optString("status"));
+            } catch (JSONException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+
+            try {
+                TranscriptResult result = client.fetch(clientId);
+                if (cancelled) return;
+                if (result.isCompleted()) {
+                    finish();
+                    listener.onCompleted(result);
+                    return;
+                }
+                deliverPartial(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error polling for transcript", e);
+            }
+
+            if (System.currentTimeMillis() - startedAt >= maxWaitMs) {
+                timeOut();
+            } else if (batchSupported) {
+                joinBatch(this);
+            } else {
+                schedule(nextDelay(attempt++));
+            }
+        }
+
+        void timeOut() {
+            Log.w(TAG, "Gave up waiting for transcript " + clientId);
+            client.forget(clientId);
+            finish();
+            listener.onTimedOut();
+        }
+
+        private void finish() {
+            synchronized (TranscriptPoller.this) {
+                polls.remove(clientId, this);
+            }
+        }
+    }
+}
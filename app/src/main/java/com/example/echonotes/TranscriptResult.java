@@ -0,0 +1,49 @@
+package com.example.echonotes;
+
+import java.util.List;
+
+public class TranscriptResult {
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_COMPLETED = "completed";
+
+    private final String status;
+    private final List<Utterance> transcript;
+    private final String summary;
+    private final boolean notModified;
+
+    public TranscriptResult(String status, List<Utterance> transcript, String summary) {
+        this(status, transcript, summary, false);
+    }
+
+    private TranscriptResult(String status, List<Utterance> transcript, String summary, boolean notModified) {
+        this.status = status;
+        this.transcript = transcript;
+        this.summary = summary;
+        this.notModified = notModified;
+    }
+
+    /** A poll the server answered with 304: the job is still in {@code status}. */
+    public static TranscriptResult notModified(String status) {
+        return new TranscriptResult(status, null, null, true);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isCompleted() {
+        return STATUS_COMPLETED.equals(status);
+    }
+
+    public List<Utterance> getTranscript() {
+        return transcript;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+}
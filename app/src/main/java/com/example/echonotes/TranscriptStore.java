@@ -0,0 +1,327 @@
+package com.example.echonotes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-device copy of every recording's transcript and summary, keyed by the server's client_id and
+ * by the audio file it came from, so finished results survive fragment recreation and app
+ * restarts without asking the server again.
+ *
+ * It also tracks each recording session's upload job, from the moment its first segment is
+ * queued until its transcript is stored, and the SHA-256 of each segment that made it to the
+ * server, so a retried segment is never sent twice.
+ *
+ * Calls hit the disk; keep them off the main thread.
+ */
+public class TranscriptStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "transcripts.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static final String JOB_QUEUED = "queued";
+    public static final String JOB_UPLOADING = "uploading";
+    public static final String JOB_PROCESSING = "processing";
+    public static final String JOB_DONE = "done";
+    public static final String JOB_FAILED = "failed";
+
+    public static class UploadJob {
+        public final String sessionId;
+        public final String audioFile;
+        public final String state;
+        public final String clientId;
+
+        UploadJob(String sessionId, String audioFile, String state, String clientId) {
+            this.sessionId = sessionId;
+            this.audioFile = audioFile;
+            this.state = state;
+            this.clientId = clientId;
+        }
+    }
+
+    public static class SegmentUpload {
+        public final String sha256;
+        /** Null unless the segment was the session's last. */
+        public final String clientId;
+
+        SegmentUpload(String sha256, String clientId) {
+            this.sha256 = sha256;
+            this.clientId = clientId;
+        }
+    }
+
+    private static TranscriptStore instance;
+
+    public static synchronized TranscriptStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new TranscriptStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TranscriptStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE recordings ("
+                + "client_id TEXT PRIMARY KEY, "
+                + "audio_file TEXT NOT NULL, "
+                + "status TEXT NOT NULL, "
+                + "summary TEXT, "
+                + "created_at INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX recordings_audio_file ON recordings(audio_file)");
+        db.execSQL("CREATE TABLE utterances ("
+                + "client_id TEXT NOT NULL REFERENCES recordings(client_id) ON DELETE CASCADE, "
+                + "position INTEGER NOT NULL, "
+                + "speaker TEXT, "
+                + "text TEXT, "
+                + "start_ms INTEGER NOT NULL, "
+                + "end_ms INTEGER NOT NULL, "
+                + "PRIMARY KEY (client_id, position))");
+        db.execSQL("CREATE TABLE upload_jobs ("
+                + "session_id TEXT PRIMARY KEY, "
+                + "audio_file TEXT NOT NULL, "
+                + "state TEXT NOT NULL, "
+                + "client_id TEXT, "
+                + "updated_at INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX upload_jobs_client_id ON upload_jobs(client_id)");
+        db.execSQL("CREATE TABLE upload_hashes ("
+                + "session_id TEXT NOT NULL, "
+                + "segment_index INTEGER NOT NULL, "
+                + "sha256 TEXT NOT NULL, "
+                + "client_id TEXT, "
+                + "created_at INTEGER NOT NULL, "
+                + "PRIMARY KEY (session_id, segment_index))");
+        db.execSQL("CREATE TABLE segment_offsets ("
+                + "session_id TEXT NOT NULL, "
+                + "segment_index INTEGER NOT NULL, "
+                + "original_duration_ms INTEGER NOT NULL, "
+                + "offsets TEXT NOT NULL, "
+                + "PRIMARY KEY (session_id, segment_index))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Version 1 is the first schema; there is nothing to migrate yet.
+    }
+
+    /** Remembers how a silence-trimmed segment maps back to what was recorded. */
+    public void saveSegmentOffsets(String sessionId, int index, long originalDurationMs, OffsetMap offsets) {
+        ContentValues values = new ContentValues();
+        values.put("session_id", sessionId);
+        values.put("segment_index", index);
+        values.put("original_duration_ms", originalDurationMs);
+        values.put("offsets", offsets.encode());
+        getWritableDatabase().insertWithOnConflict("segment_offsets", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * The session's segment maps joined in order, matching the timeline of the audio the server
+     * transcribed, or null unless every segment from the first on has one.
+     */
+    public OffsetMap loadOffsetMap(String sessionId) {
+        try (Cursor cursor = getReadableDatabase().query("segment_offsets",
+                new String[]{"segment_index", "original_duration_ms", "offsets"},
+                "session_id = ?", new String[]{sessionId}, null, null, "segment_index")) {
+            OffsetMap combined = null;
+            long originalOffsetMs = 0;
+            int expected = 0;
+            while (cursor.moveToNext()) {
+                if (cursor.getInt(0) != expected++) return null;
+                OffsetMap segment = OffsetMap.decode(cursor.getString(2));
+                combined = combined == null ? segment : combined.append(segment, originalOffsetMs);
+                originalOffsetMs += cursor.getLong(1);
+            }
+            return combined;
+        }
+    }
+
+    /** Records that the server holds a segment of the session; {@code clientId} only for the last. */
+    public void saveSegmentUpload(String sessionId, int index, String sha256, String clientId) {
+        ContentValues values = new ContentValues();
+        values.put("session_id", sessionId);
+        values.put("segment_index", index);
+        values.put("sha256", sha256);
+        values.put("client_id", clientId);
+        values.put("created_at", System.currentTimeMillis());
+        getWritableDatabase().insertWithOnConflict("upload_hashes", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /** What was uploaded for this segment of the session, or null if nothing yet. */
+    public SegmentUpload findSegmentUpload(String sessionId, int index) {
+        try (Cursor cursor = getReadableDatabase().query("upload_hashes", new String[]{"sha256", "client_id"},
+                "session_id = ? AND segment_index = ?", new String[]{sessionId, String.valueOf(index)},
+                null, null, null)) {
+            return cursor.moveToFirst() ? new SegmentUpload(cursor.getString(0), cursor.getString(1)) : null;
+        }
+    }
+
+    /** Notes a queued segment; the job keeps the name of the newest one. */
+    public void saveJob(String sessionId, String audioFileName) {
+        ContentValues values = new ContentValues();
+        values.put("session_id", sessionId);
+        values.put("audio_file", audioFileName);
+        values.put("state", JOB_QUEUED);
+        values.put("updated_at", System.currentTimeMillis());
+
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.insertWithOnConflict("upload_jobs", null, values, SQLiteDatabase.CONFLICT_IGNORE) == -1) {
+            ContentValues update = new ContentValues();
+            update.put("audio_file", audioFileName);
+            update.put("updated_at", System.currentTimeMillis());
+            db.update("upload_jobs", update, "session_id = ?", new String[]{sessionId});
+        }
+    }
+
+    public void updateJobState(String sessionId, String state) {
+        ContentValues values = new ContentValues();
+        values.put("state", state);
+        values.put("updated_at", System.currentTimeMillis());
+        getWritableDatabase().update("upload_jobs", values, "session_id = ?", new String[]{sessionId});
+    }
+
+    /** The last segment is up and the server has started transcribing under {@code clientId}. */
+    public void markJobProcessing(String sessionId, String clientId) {
+        ContentValues values = new ContentValues();
+        values.put("state", JOB_PROCESSING);
+        values.put("client_id", clientId);
+        values.put("updated_at", System.currentTimeMillis());
+        getWritableDatabase().update("upload_jobs", values, "session_id = ?", new String[]{sessionId});
+    }
+
+    /** The session's upload job, or null if it has none. */
+    public UploadJob findJob(String sessionId) {
+        try (Cursor cursor = getReadableDatabase().query("upload_jobs",
+                new String[]{"session_id", "audio_file", "state", "client_id"},
+                "session_id = ?", new String[]{sessionId}, null, null, null)) {
+            return cursor.moveToFirst()
+                    ? new UploadJob(cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getString(3))
+                    : null;
+        }
+    }
+
+    /** Upload jobs, newest session first (session ids sort by start time). */
+    public List<UploadJob> recentJobs(int limit) {
+        List<UploadJob> jobs = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query("upload_jobs",
+                new String[]{"session_id", "audio_file", "state", "client_id"},
+                null, null, null, null, "session_id DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                jobs.add(new UploadJob(cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getString(3)));
+            }
+        }
+        return jobs;
+    }
+
+    /** Records an upload the server has accepted, before any result is known. */
+    public void saveRecording(String clientId, String audioFileName) {
+        ContentValues values = new ContentValues();
+        values.put("client_id", clientId);
+        values.put("audio_file", audioFileName);
+        values.put("status", TranscriptResult.STATUS_PROCESSING);
+        values.put("created_at", System.currentTimeMillis());
+        getWritableDatabase().insertWithOnConflict("recordings", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    public void saveResult(String clientId, TranscriptResult result) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("status", result.getStatus());
+            values.put("summary", result.getSummary());
+            db.update("recordings", values, "client_id = ?", new String[]{clientId});
+
+            if (result.isCompleted()) {
+                ContentValues job = new ContentValues();
+                job.put("state", JOB_DONE);
+                job.put("updated_at", System.currentTimeMillis());
+                db.update("upload_jobs", job, "client_id = ?", new String[]{clientId});
+            }
+
+            List<Utterance> transcript = result.getTranscript();
+            if (transcript != null) {
+                db.delete("utterances", "client_id = ?", new String[]{clientId});
+                SQLiteStatement insert = db.compileStatement(
+                        "INSERT INTO utterances (client_id, position, speaker, text, start_ms, end_ms) "
+                                + "VALUES (?, ?, ?, ?, ?, ?)");
+                try {
+                    for (int i = 0; i < transcript.size(); i++) {
+                        Utterance utterance = transcript.get(i);
+                        insert.clearBindings();
+                        insert.bindString(1, clientId);
+                        insert.bindLong(2, i);
+                        bindNullable(insert, 3, utterance.getSpeaker());
+                        bindNullable(insert, 4, utterance.getText());
+                        insert.bindLong(5, utterance.getStartMs());
+                        insert.bindLong(6, utterance.getEndMs());
+                        insert.executeInsert();
+                    }
+                } finally {
+                    insert.close();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return the stored result, with its transcript only if the job has completed, or null if
+     *         this client_id was never saved
+     */
+    public TranscriptResult load(String clientId) {
+        SQLiteDatabase db = getReadableDatabase();
+        String status;
+        String summary;
+        try (Cursor cursor = db.query("recordings", new String[]{"status", "summary"},
+                "client_id = ?", new String[]{clientId}, null, null, null)) {
+            if (!cursor.moveToFirst()) return null;
+            status = cursor.getString(0);
+            summary = cursor.getString(1);
+        }
+        if (!TranscriptResult.STATUS_COMPLETED.equals(status)) {
+            return new TranscriptResult(status, null, null);
+        }
+
+        List<Utterance> transcript = new ArrayList<>();
+        try (Cursor cursor = db.query("utterances", new String[]{"speaker", "text", "start_ms", "end_ms"},
+                "client_id = ?", new String[]{clientId}, null, null, "position")) {
+            while (cursor.moveToNext()) {
+                transcript.add(new Utterance(cursor.getString(0), cursor.getString(1),
+                        cursor.getLong(2), cursor.getLong(3)));
+            }
+        }
+        return new TranscriptResult(status, transcript, summary);
+    }
+
+    public String findClientId(String audioFileName) {
+        try (Cursor cursor = getReadableDatabase().query("recordings", new String[]{"client_id"},
+                "audio_file = ?", new String[]{audioFileName}, null, null, "created_at DESC", "1")) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.echonotes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Persists the resumable upload session for each audio file, so an interrupted upload can pick
+ * up from the last acknowledged offset after a dropped connection or a process restart.
+ */
+public class UploadCheckpointStore {
+
+    public static class Checkpoint {
+        public final String uploadId;
+        public final long fileLength;
+        public final long lastModified;
+        public final long offset;
+
+        public Checkpoint(String uploadId, long fileLength, long lastModified, long offset) {
+            this.uploadId = uploadId;
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+            this.offset = offset;
+        }
+
+        public Checkpoint withOffset(long newOffset) {
+            return new Checkpoint(uploadId, fileLength, lastModified, newOffset);
+        }
+
+        /** A checkpoint only applies if the file hasn't changed since the session was opened. */
+        public boolean matches(File file) {
+            return file.length() == fileLength && file.lastModified() == lastModified;
+        }
+    }
+
+    private final File directory;
+
+    public UploadCheckpointStore(File directory) {
+        this.directory = directory;
+    }
+
+    public synchronized Checkpoint load(File audioFile) {
+        File checkpointFile = checkpointFile(audioFile);
+        if (!checkpointFile.exists()) return null;
+
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(checkpointFile)) {
+            properties.load(in);
+            return new Checkpoint(
+                    properties.getProperty("upload_id"),
+                    Long.parseLong(properties.getProperty("file_length")),
+                    Long.parseLong(properties.getProperty("last_modified")),
+                    Long.parseLong(properties.getProperty("offset")));
+        } catch (IOException | RuntimeException e) {
+            // A torn or stale checkpoint just means starting a fresh session.
+            checkpointFile.delete();
+            return null;
+        }
+    }
+
+    public synchronized void save(File audioFile, Checkpoint checkpoint) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create checkpoint directory " + directory);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("upload_id", checkpoint.uploadId);
+        properties.setProperty("file_length", String.valueOf(checkpoint.fileLength));
+        properties.setProperty("last_modified", String.valueOf(checkpoint.lastModified));
+        properties.setProperty("offset", String.valueOf(checkpoint.offset));
+
+        // Write then rename so a crash mid-write never leaves a half-written checkpoint behind.
+        File target = checkpointFile(audioFile);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Cannot write checkpoint " + target);
+        }
+    }
+
+    public synchronized void clear(File audioFile) {
+        checkpointFile(audioFile).delete();
+    }
+
+    private File checkpointFile(File audioFile) {
+        return new File(directory, audioFile.getName() + ".checkpoint");
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.echonotes;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker pool for the upload queue whose size follows the current network: uploads run one at a
+ * time on a slow or metered link, where parallel sessions would only split the same bandwidth,
+ * and a few at once on a fast unmetered one.
+ */
+public class UploadExecutor extends ThreadPoolExecutor {
+
+    private static final String TAG = "UploadExecutor";
+    static final int MAX_CONCURRENCY = 3;
+    private static final int DEFAULT_CONCURRENCY = 2;
+
+    public UploadExecutor() {
+        super(DEFAULT_CONCURRENCY, DEFAULT_CONCURRENCY, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new UploadThreadFactory());
+    }
+
+    /** Applies a new cap; uploads already running above it finish before their threads retire. */
+    public synchronized void setConcurrency(int concurrency) {
+        int size = Math.max(1, Math.min(MAX_CONCURRENCY, concurrency));
+        if (size == getCorePoolSize()) return;
+
+        Log.d(TAG, "Upload concurrency " + getCorePoolSize() + " -> " + size);
+        // The core size may never exceed the max, so the order depends on the direction.
+        if (size > getMaximumPoolSize()) {
+            setMaximumPoolSize(size);
+            setCorePoolSize(size);
+        } else {
+            setCorePoolSize(size);
+            setMaximumPoolSize(size);
+        }
+    }
+
+    static int concurrencyFor(int upstreamKbps, boolean metered) {
+        if (metered || upstreamKbps < 1_000) return 1;
+        if (upstreamKbps < 10_000) return 2;
+        return MAX_CONCURRENCY;
+    }
+
+    /** Keeps the cap in step with the default network for the life of the process. */
+    public void watch(Context context) {
+        ConnectivityManager connectivityManager = context.getSystemService(ConnectivityManager.class);
+        if (connectivityManager == null) return;
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+                boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+                setConcurrency(concurrencyFor(capabilities.getLinkUpstreamBandwidthKbps(), metered));
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                setConcurrency(1);
+            }
+        });
+    }
+
+    private static class UploadThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "upload-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.echonotes;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable upload queue for recordings, backed by WorkManager so queued segments survive the app
+ * being backgrounded or killed and go out once a network is available.
+ *
+ * Each session is one unique work chain: its segments are appended in order and upload one after
+ * another, while different sessions drain side by side, bounded by the worker pool that
+ * {@link EchoNotesApplication} configures. Job state is mirrored into {@link TranscriptStore}.
+ */
+public final class UploadQueue {
+
+    static final String KEY_UPLOAD_URL = "upload_url";
+    static final String KEY_SESSION_ID = "session_id";
+    static final String KEY_FILE_PATH = "file_path";
+    static final String KEY_SEGMENT_INDEX = "segment_index";
+    static final String KEY_IS_LAST = "is_last";
+    static final String KEY_TRIM_SILENCE = "trim_silence";
+    static final String KEY_AUDIO_PROFILE = "audio_profile";
+    public static final String KEY_CLIENT_ID = "client_id";
+    public static final String KEY_PERCENT = "percent";
+
+    /** Tags the work for a session's last segment, whose output carries the client_id. */
+    public static final String TAG_LAST_SEGMENT = "last_segment";
+
+    private static final long BACKOFF_DELAY_SECONDS = 30;
+
+    // Keeps the job row ahead of its work request, and segments in the order they were recorded.
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private UploadQueue() {
+    }
+
+    public static void enqueue(Context context, String uploadUrl, String sessionId, File segment, int index,
+                               boolean isLast, boolean trimSilence, AudioProfile profile) {
+        Context appContext = context.getApplicationContext();
+        Data input = new Data.Builder()
+                .putString(KEY_UPLOAD_URL, uploadUrl)
+                .putString(KEY_SESSION_ID, sessionId)
+                .putString(KEY_FILE_PATH, segment.getAbsolutePath())
+                .putInt(KEY_SEGMENT_INDEX, index)
+                .putBoolean(KEY_IS_LAST, isLast)
+                .putBoolean(KEY_TRIM_SILENCE, trimSilence)
+                .putString(KEY_AUDIO_PROFILE, profile.name())
+                .build();
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest.Builder request = new OneTimeWorkRequest.Builder(UploadWorker.class)
+                .setInputData(input)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS);
+        if (isLast) {
+            request.addTag(TAG_LAST_SEGMENT);
+        }
+
+        EXECUTOR.execute(() -> {
+            TranscriptStore.getInstance(appContext).saveJob(sessionId, segment.getName());
+            WorkManager.getInstance(appContext)
+                    .beginUniqueWork(uniqueWorkName(sessionId), ExistingWorkPolicy.APPEND, request.build())
+                    .enqueue();
+        });
+    }
+
+    public static LiveData<List<WorkInfo>> observe(Context context, String sessionId) {
+        return WorkManager.getInstance(context.getApplicationContext())
+                .getWorkInfosForUniqueWorkLiveData(uniqueWorkName(sessionId));
+    }
+
+    private static String uniqueWorkName(String sessionId) {
+        return "upload-" + sessionId;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.echonotes;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Uploads a single recording segment queued by {@link UploadQueue}. Network failures are retried
+ * with backoff once connectivity returns; the resumable upload picks up from its checkpoint, so a
+ * retry only sends what the server hasn't acknowledged.
+ *
+ * Before anything is sent the segment is hashed. A segment the local index shows was already
+ * uploaded for this session and index is skipped. A retried segment may have reached the server on
+ * an earlier attempt, so retries first ask the server for the hash and attach the content it
+ * already holds instead of sending it again. A first attempt at a new recording can't be there
+ * yet and goes straight to the upload.
+ *
+ * Sessions recorded with silence trimming have each segment trimmed first, and what is uploaded
+ * and hashed is the trimmed copy. Every segment of such a session gets an offset map, an identity
+ * one if it couldn't be trimmed, so the session's timings can always be mapped back.
+ */
+public class UploadWorker extends Worker {
+
+    private static final String TAG = "UploadWorker";
+    // Beyond this the server is rejecting the segment rather than the network dropping it.
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long MIN_SILENCE_MS = 1_500;
+    private static final long SILENCE_PADDING_MS = 250;
+
+    private int lastPercent = -1;
+
+    public UploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        String uploadUrl = input.getString(UploadQueue.KEY_UPLOAD_URL);
+        String sessionId = input.getString(UploadQueue.KEY_SESSION_ID);
+        File segment = new File(input.getString(UploadQueue.KEY_FILE_PATH));
+        int index = input.getInt(UploadQueue.KEY_SEGMENT_INDEX, 0);
+        boolean isLast = input.getBoolean(UploadQueue.KEY_IS_LAST, false);
+        boolean trimSilence = input.getBoolean(UploadQueue.KEY_TRIM_SILENCE, false);
+        AudioProfile profile = AudioProfile.valueOf(input.getString(UploadQueue.KEY_AUDIO_PROFILE));
+
+        TranscriptStore store = TranscriptStore.getInstance(getApplicationContext());
+        if (!segment.exists()) {
+            Log.e(TAG, "Segment " + index + " of session " + sessionId + " is gone");
+            store.updateJobState(sessionId, TranscriptStore.JOB_FAILED);
+            return Result.failure();
+        }
+
+        store.updateJobState(sessionId, TranscriptStore.JOB_UPLOADING);
+        UploadCheckpointStore checkpointStore =
+                new UploadCheckpointStore(new File(getApplicationContext().getFilesDir(), "upload_checkpoints"));
+        SegmentUploader uploader = new SegmentUploader(uploadUrl, sessionId, checkpointStore);
+
+        File trimmed = new File(segment.getParentFile(), "trimmed_" + segment.getName());
+        File uploadFile = trimSilence ? trimSilence(store, sessionId, index, segment, trimmed) : segment;
+
+        try {
+            String sha256 = ContentHash.sha256(uploadFile);
+            TranscriptStore.SegmentUpload previous = store.findSegmentUpload(sessionId, index);
+            boolean uploaded = previous != null && previous.sha256.equals(sha256);
+            String clientId;
+            if (uploaded && (!isLast || previous.clientId != null)) {
+                Log.d(TAG, "Segment " + index + " of session " + sessionId + " was already uploaded");
+                clientId = previous.clientId;
+            } else {
+                JSONObject response = null;
+                // A segment already sent as a non-final one, now ending the session after a failed
+                // stop or a crash, only needs the server told that it is the last.
+                if (uploaded || (getRunAttemptCount() > 0 && uploader.lookup(sha256) != null)) {
+                    response = uploader.attach(index, isLast, sha256, profile);
+                }
+                if (response == null || (isLast && !response.has("client_id"))) {
+                    response = uploader.upload(uploadFile, index, isLast, sha256, profile, this::reportProgress);
+                }
+                clientId = isLast ? response.getString("client_id") : null;
+                store.saveSegmentUpload(sessionId, index, sha256, clientId);
+            }
+            trimmed.delete();
+            if (!isLast) {
+                return Result.success();
+            }
+
+            store.saveRecording(clientId, segment.getName());
+            store.markJobProcessing(sessionId, clientId);
+            return Result.success(new Data.Builder()
+                    .putString(UploadQueue.KEY_CLIENT_ID, clientId)
+                    .build());
+        } catch (IOException e) {
+            if (getRunAttemptCount() + 1 >= MAX_ATTEMPTS) {
+                Log.e(TAG, "Giving up on segment " + index + " of session " + sessionId, e);
+                store.updateJobState(sessionId, TranscriptStore.JOB_FAILED);
+                return Result.failure();
+            }
+            Log.w(TAG, "Segment " + index + " upload interrupted, will retry", e);
+            store.updateJobState(sessionId, TranscriptStore.JOB_QUEUED);
+            return Result.retry();
+        } catch (JSONException e) {
+            Log.e(TAG, "Unexpected upload response for segment " + index, e);
+            store.updateJobState(sessionId, TranscriptStore.JOB_FAILED);
+            return Result.failure();
+        }
+    }
+
+    /**
+     * Trims the segment unless a previous attempt already did; the trimmed copy is kept until it
+     * has been uploaded so retries resume the same bytes. It is written under a temporary name and
+     * only renamed once its offsets are stored, so an existing trimmed copy always has them. If
+     * trimming fails the segment goes up whole, mapped onto itself.
+     */
+    private File trimSilence(TranscriptStore store, String sessionId, int index, File segment, File trimmed) {
+        if (trimmed.exists()) return trimmed;
+        File pending = new File(trimmed.getPath() + ".pending");
+        try {
+            SilenceTrimmer.Result result = new SilenceTrimmer(new EnergyVad(MIN_SILENCE_MS, SILENCE_PADDING_MS))
+                    .trim(segment, pending);
+            store.saveSegmentOffsets(sessionId, index, result.originalDurationMs, result.offsets);
+            if (result.file != pending) return result.file;
+            if (!pending.renameTo(trimmed)) throw new IOException("Could not move trimmed audio to " + trimmed);
+            return trimmed;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not trim silence from segment " + index + ", uploading it whole", e);
+            pending.delete();
+            long durationMs = durationMs(segment);
+            if (durationMs >= 0) {
+                // Without it the whole session would fall back to the server's timings.
+                store.saveSegmentOffsets(sessionId, index, durationMs, OffsetMap.identity(durationMs));
+            }
+            return segment;
+        }
+    }
+
+    private static long durationMs(File file) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(file.getAbsolutePath());
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration != null ? Long.parseLong(duration) : -1;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not read the duration of " + file.getName(), e);
+            return -1;
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException | RuntimeException ignored) {}
+        }
+    }
+
+    private void reportProgress(long bytesSent, long totalBytes) {
+        int percent = (int) (bytesSent * 100 / totalBytes);
+        if (percent != lastPercent) {
+            lastPercent = percent;
+            setProgressAsync(new Data.Builder().putInt(UploadQueue.KEY_PERCENT, percent).build());
+        }
+    }
+}
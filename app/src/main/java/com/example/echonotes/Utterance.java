@@ -0,0 +1,32 @@
+package com.example.echonotes;
+
+public class Utterance {
+    private final String speaker;
+    private final String text;
+    private final long startMs;
+    private final long endMs;
+
+    public Utterance(String speaker, String text, long startMs, long endMs) {
+        this.speaker = speaker;
+        this.text = text;
+        this.startMs = startMs;
+        this.endMs = endMs;
+    }
+
+    public String getSpeaker() {
+        return speaker;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** Start offset in the uploaded audio, or -1 if the server didn't send timings. */
+    public long getStartMs() {
+        return startMs;
+    }
+
+    public long getEndMs() {
+        return endMs;
+    }
+}
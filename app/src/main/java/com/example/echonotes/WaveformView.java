@@ -0,0 +1,66 @@
+package com.example.echonotes;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Scrolling bar graph of the live input level from a {@link LevelMeter}, newest on the right.
+ * Redraws every display frame while a meter is attached, without allocating.
+ */
+public class WaveformView extends View {
+
+    private static final float BAR_WIDTH_DP = 2f;
+    private static final float BAR_GAP_DP = 1f;
+
+    private final Paint barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float barWidth;
+    private final float barStep;
+    private LevelMeter meter;
+    private float[] levels = new float[0];
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        barWidth = BAR_WIDTH_DP * density;
+        barStep = (BAR_WIDTH_DP + BAR_GAP_DP) * density;
+        barPaint.setColor(Color.BLACK);
+        barPaint.setStrokeCap(Paint.Cap.ROUND);
+        barPaint.setStrokeWidth(barWidth);
+    }
+
+    /** Starts drawing {@code meter}'s levels, or stops and clears with null. */
+    public void setMeter(@Nullable LevelMeter meter) {
+        this.meter = meter;
+        if (meter != null && levels.length != meter.capacity()) {
+            levels = new float[meter.capacity()];
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (meter == null) return;
+
+        int bars = Math.min(levels.length, (int) (getWidth() / barStep));
+        int count = meter.copyLevels(levels);
+        int shown = Math.min(bars, count);
+        float centerY = getHeight() / 2f;
+        float maxHalf = getHeight() / 2f - barWidth;
+        float right = getWidth() - barWidth / 2;
+        for (int i = 0; i < shown; i++) {
+            float db = levels[count - 1 - i];
+            float fraction = (db - LevelMeter.FLOOR_DB) / -LevelMeter.FLOOR_DB;
+            float half = Math.max(barWidth / 2, fraction * maxHalf);
+            float x = right - i * barStep;
+            canvas.drawLine(x, centerY - half, x, centerY + half, barPaint);
+        }
+        postInvalidateOnAnimation();
+    }
+}
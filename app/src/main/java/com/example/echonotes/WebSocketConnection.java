@@ -0,0 +1,280 @@
+package com.example.echonotes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Minimal RFC 6455 WebSocket client: text and binary messages, ping/pong and close, no
+ * extensions. Sending is thread-safe; {@link #receive()} must only be called from one thread.
+ * Incoming messages are capped at {@link #MAX_MESSAGE_BYTES}; the connection is closed with 1009
+ * rather than buffering whatever length a server claims.
+ */
+public class WebSocketConnection implements Closeable {
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    // Servers only send short JSON messages, and control frames are at most 125 bytes.
+    static final int MAX_MESSAGE_BYTES = 64 * 1024;
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_BINARY = 0x2;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] mask = new byte[4];
+    private final byte[] header = new byte[14];
+    private final byte[] maskBuffer = new byte[4096];
+    private volatile boolean closeSent;
+
+    private WebSocketConnection(Socket socket, InputStream in) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(in);
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * @param readTimeoutMs how long {@link #receive()} may wait before failing; the server is
+     *                      expected to send something, if only a ping, within it
+     */
+    public static WebSocketConnection connect(String url, int readTimeoutMs) throws IOException {
+        URI uri = URI.create(url);
+        boolean secure = "wss".equals(uri.getScheme());
+        if (!secure && !"ws".equals(uri.getScheme())) throw new IOException("Not a WebSocket URL: " + url);
+        String host = uri.getHost();
+        int port = uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80;
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(readTimeoutMs);
+            socket.setTcpNoDelay(true);
+            if (secure) {
+                SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, host, port, true);
+                ssl.startHandshake();
+                // Raw SSL sockets don't check the certificate's host name themselves.
+                if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, ssl.getSession())) {
+                    throw new IOException("Certificate doesn't match " + host);
+                }
+                socket = ssl;
+            }
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            handshake(socket.getOutputStream(), in, uri, host, port, secure);
+            return new WebSocketConnection(socket, in);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static void handshake(OutputStream out, InputStream in, URI uri, String host, int port,
+                                  boolean secure) throws IOException {
+        byte[] nonce = new byte[16];
+        new SecureRandom().nextBytes(nonce);
+        String key = base64(nonce);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) path += "?" + uri.getRawQuery();
+        boolean defaultPort = port == (secure ? 443 : 80);
+
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + host + (defaultPort ? "" : ":" + port) + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        String status = readLine(in);
+        if (!status.startsWith("HTTP/1.1 101")) throw new IOException("Upgrade refused: " + status);
+        String accept = null;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")) {
+                accept = line.substring(colon + 1).trim();
+            }
+        }
+        if (!acceptFor(key).equals(accept)) throw new IOException("Bad Sec-WebSocket-Accept");
+    }
+
+    static String acceptFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + GUID).getBytes(StandardCharsets.US_ASCII));
+            return base64(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // java.util.Base64 needs API 26, and android.util.Base64 is a stub in unit tests.
+    private static String base64(byte[] bytes) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder encoded = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int i = 0; i < bytes.length; i += 3) {
+            int n = (bytes[i] & 0xFF) << 16;
+            if (i + 1 < bytes.length) n |= (bytes[i + 1] & 0xFF) << 8;
+            if (i + 2 < bytes.length) n |= bytes[i + 2] & 0xFF;
+            encoded.append(alphabet.charAt(n >> 18 & 63)).append(alphabet.charAt(n >> 12 & 63));
+            encoded.append(i + 1 < bytes.length ? alphabet.charAt(n >> 6 & 63) : '=');
+            encoded.append(i + 2 < bytes.length ? alphabet.charAt(n & 63) : '=');
+        }
+        return encoded.toString();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new EOFException("Connection closed during handshake");
+            if (b != '\r') line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    public void sendText(String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        send(OP_TEXT, payload, 0, payload.length);
+    }
+
+    public void sendBinary(byte[] payload, int offset, int length) throws IOException {
+        send(OP_BINARY, payload, offset, length);
+    }
+
+    /** A received message: text, or binary when {@link #text} is null. */
+    public static class Message {
+        public final String text;
+        public final byte[] data;
+
+        Message(String text, byte[] data) {
+            this.text = text;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Blocks for the next message, answering pings on the way.
+     *
+     * @return the message, or null once the server has closed the connection
+     */
+    public Message receive() throws IOException {
+        ByteArrayOutputStream fragments = null;
+        int messageOpcode = -1;
+        while (true) {
+            int first = in.readUnsignedByte();
+            int second = in.readUnsignedByte();
+            boolean fin = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            long length = second & 0x7F;
+            if (length == 126) length = in.readUnsignedShort();
+            else if (length == 127) length = in.readLong();
+            if ((second & 0x80) != 0) throw new IOException("Server frames must not be masked");
+            long buffered = fragments != null && opcode == OP_CONTINUATION ? fragments.size() : 0;
+            if (length < 0 || length + buffered > MAX_MESSAGE_BYTES) {
+                // 1009: message too big.
+                send(OP_CLOSE, new byte[]{0x03, (byte) 0xF1}, 0, 2);
+                socket.close();
+                throw new IOException("Message too large: " + (length + buffered) + " bytes");
+            }
+            byte[] payload = new byte[(int) length];
+            in.readFully(payload);
+
+            switch (opcode) {
+                case OP_PING:
+                    send(OP_PONG, payload, 0, payload.length);
+                    continue;
+                case OP_PONG:
+                    continue;
+                case OP_CLOSE:
+                    if (!closeSent) send(OP_CLOSE, payload, 0, Math.min(payload.length, 2));
+                    socket.close();
+                    return null;
+                case OP_CONTINUATION:
+                    if (fragments == null) throw new IOException("Continuation without a message");
+                    break;
+                default:
+                    messageOpcode = opcode;
+                    fragments = new ByteArrayOutputStream();
+            }
+            fragments.write(payload, 0, payload.length);
+            if (!fin) continue;
+
+            byte[] message = fragments.toByteArray();
+            return messageOpcode == OP_TEXT
+                    ? new Message(new String(message, StandardCharsets.UTF_8), null)
+                    : new Message(null, message);
+        }
+    }
+
+    /** Starts the closing handshake; {@link #receive()} returns null once the server agrees. */
+    public void sendClose() throws IOException {
+        if (closeSent) return;
+        // 1000: normal closure.
+        send(OP_CLOSE, new byte[]{0x03, (byte) 0xE8}, 0, 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private synchronized void send(int opcode, byte[] payload, int offset, int length) throws IOException {
+        if (opcode == OP_CLOSE) {
+            if (closeSent) return;
+            closeSent = true;
+        }
+        int headerLength = 2;
+        header[0] = (byte) (0x80 | opcode);
+        if (length < 126) {
+            header[1] = (byte) (0x80 | length);
+        } else if (length <= 0xFFFF) {
+            header[1] = (byte) (0x80 | 126);
+            header[2] = (byte) (length >> 8);
+            header[3] = (byte) length;
+            headerLength = 4;
+        } else {
+            header[1] = (byte) (0x80 | 127);
+            for (int i = 0; i < 8; i++) header[2 + i] = (byte) ((long) length >> (56 - 8 * i));
+            headerLength = 10;
+        }
+        // Client frames are masked, as the protocol requires.
+        random.nextBytes(mask);
+        System.arraycopy(mask, 0, header, headerLength, 4);
+        out.write(header, 0, headerLength + 4);
+
+        for (int done = 0; done < length; done += maskBuffer.length) {
+            int chunk = Math.min(maskBuffer.length, length - done);
+            for (int i = 0; i < chunk; i++) {
+                maskBuffer[i] = (byte) (payload[offset + done + i] ^ mask[(done + i) & 3]);
+            }
+            out.write(maskBuffer, 0, chunk);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.echonotes;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EnergyVadTest {
+
+    private static final float SPEECH_DB = -20f;
+    private static final float SILENCE_DB = -70f;
+
+    private final EnergyVad vad = new EnergyVad(1_000, 200);
+
+    @Test
+    public void cutsLongSilencesAndKeepsPadding() {
+        // 2 s speech, 3 s silence, 1 s speech
+        float[] levels = levels(2_000, SPEECH_DB, 3_000, SILENCE_DB, 1_000, SPEECH_DB);
+
+        List<long[]> kept = vad.keptSpans(levels);
+
+        assertEquals(2, kept.size());
+        assertArrayEquals(new long[]{0, 2_200}, kept.get(0));
+        assertArrayEquals(new long[]{4_800, 6_000}, kept.get(1));
+    }
+
+    @Test
+    public void keepsShortPauses() {
+        float[] levels = levels(2_000, SPEECH_DB, 600, SILENCE_DB, 2_000, SPEECH_DB);
+
+        List<long[]> kept = vad.keptSpans(levels);
+
+        assertEquals(1, kept.size());
+        assertArrayEquals(new long[]{0, 4_600}, kept.get(0));
+    }
+
+    @Test
+    public void trimsLeadingAndTrailingSilenceToPadding() {
+        float[] levels = levels(2_000, SILENCE_DB, 1_000, SPEECH_DB, 2_000, SILENCE_DB);
+
+        List<long[]> kept = vad.keptSpans(levels);
+
+        assertEquals(1, kept.size());
+        assertArrayEquals(new long[]{1_800, 3_200}, kept.get(0));
+    }
+
+    @Test
+    public void keepsNothingWhenEverythingIsSilent() {
+        assertTrue(vad.keptSpans(levels(5_000, SILENCE_DB)).isEmpty());
+    }
+
+    @Test
+    public void offsetMapTranslatesTrimmedTimesBack() {
+        OffsetMap map = OffsetMap.fromKeptSpans(Arrays.asList(new long[]{0, 2_200}, new long[]{4_800, 6_000}));
+
+        assertEquals(3_400, map.trimmedDurationMs());
+        assertEquals(1_000, map.toOriginal(1_000));
+        assertEquals(4_800, map.toOriginal(2_200));
+        assertEquals(5_500, map.toOriginal(2_900));
+        assertEquals(-1, map.toTrimmed(3_000));
+        assertEquals(2_900, map.toTrimmed(5_500));
+    }
+
+    @Test
+    public void offsetMapsJoinAcrossSegmentsAndSurviveEncoding() {
+        OffsetMap first = OffsetMap.fromKeptSpans(Arrays.asList(new long[]{0, 2_200}, new long[]{4_800, 6_000}));
+        OffsetMap second = OffsetMap.identity(1_000);
+
+        OffsetMap joined = OffsetMap.decode(first.append(second, 6_000).encode());
+
+        assertEquals(4_400, joined.trimmedDurationMs());
+        // The second segment starts 3.4 s into the trimmed audio and 6 s into the recording.
+        assertEquals(6_500, joined.toOriginal(3_900));
+    }
+
+    /** Frame levels for alternating (duration ms, level dB) runs. */
+    private static float[] levels(Object... runs) {
+        int frames = 0;
+        for (int i = 0; i < runs.length; i += 2) frames += (Integer) runs[i] / EnergyVad.FRAME_MS;
+
+        float[] levels = new float[frames];
+        int position = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            int count = (Integer) runs[i] / EnergyVad.FRAME_MS;
+            Arrays.fill(levels, position, position + count, (Float) runs[i + 1]);
+            position += count;
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.echonotes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GroupQueriesTest {
+
+    @Test
+    public void splitsIntoRunsOfAtMostTheLimit() {
+        List<List<Integer>> chunks = GroupQueries.chunks(Arrays.asList(1, 2, 3, 4, 5, 6, 7), 3);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Collections.singletonList(7)), chunks);
+        assertTrue(GroupQueries.chunks(Collections.emptyList(), 3).isEmpty());
+    }
+
+    @Test
+    public void rechunkKeepsUntouchedChunksAndPacksTheRest() {
+        List<List<String>> current = Arrays.asList(
+                Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e"));
+
+        List<List<String>> chunks = GroupQueries.rechunk(current, Arrays.asList("a", "b", "d", "e", "f", "g"), 2);
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("a", "b"), Collections.singletonList("e"), Arrays.asList("d", "f"),
+                Collections.singletonList("g")), chunks);
+        assertSame(current.get(0), chunks.get(0));
+    }
+
+    @Test
+    public void sortsMostRecentlyActiveFirstAndSilentGroupsLast() {
+        Group old = group("old", 1_000L);
+        Group recent = group("recent", 3_000L);
+        Group middle = group("middle", 2_000L);
+        Group silent = group("silent", null);
+
+        List<Group> groups = new ArrayList<>(Arrays.asList(old, silent, recent, middle));
+        Collections.sort(groups, GroupQueries.BY_LAST_MESSAGE_TIME);
+
+        assertEquals(Arrays.asList(recent, middle, old, silent), groups);
+    }
+
+    private static Group group(String id, Long lastMessageTime) {
+        Group group = new Group(id, id, "", "owner", new Date(0));
+        if (lastMessageTime != null) group.setLastMessageTime(new Date(lastMessageTime));
+        return group;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.echonotes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GroupSearchIndexTest {
+
+    @Test
+    public void findsWordPrefixesOfNamesAndDescriptionsIgnoringCase() {
+        GroupSearchIndex index = new GroupSearchIndex();
+        index.put(group("1", "Biology Study", "Cells and genetics"));
+        index.put(group("2", "Book Club", "Monthly novels"));
+        index.put(group("3", "Chess", "Openings and endgames"));
+
+        assertEquals(ids("1", "2"), ids(index.search("b")));
+        assertEquals(ids("1"), ids(index.search("STUDY")));
+        assertEquals(ids("1", "3"), ids(index.search(" and ")));
+        assertEquals(ids("2"), ids(index.search("monthly nov")));
+        assertTrue(index.search("xyz").isEmpty());
+        assertTrue(index.search("").isEmpty());
+    }
+
+    @Test
+    public void matchesTheSameGroupsAsTheServerSideSearch() {
+        GroupSearchIndex index = new GroupSearchIndex();
+        index.put(group("1", "Biology Study", "Cells and genetics"));
+
+        assertTrue(index.search("ology").isEmpty());
+        assertTrue(index.search("bio chem").isEmpty());
+        assertEquals(ids("1"), ids(index.search("gen bio")));
+    }
+
+    @Test
+    public void doesNotMatchAcrossNameAndDescription() {
+        GroupSearchIndex index = new GroupSearchIndex();
+        index.put(group("1", "ab", "cd"));
+
+        assertTrue(index.search("bc").isEmpty());
+        assertTrue(index.search("abcd").isEmpty());
+    }
+
+    @Test
+    public void reindexesChangedGroupsAndForgetsRemovedOnes() {
+        GroupSearchIndex index = new GroupSearchIndex();
+        index.put(group("1", "Hiking", ""));
+        index.put(group("2", "Hikers Anonymous", ""));
+
+        index.put(group("1", "Climbing", ""));
+        assertEquals(ids("2"), ids(index.search("hik")));
+        assertEquals(ids("1"), ids(index.search("climb")));
+
+        index.remove("2");
+        assertTrue(index.search("hik").isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    private static Group group(String id, String name, String description) {
+        return new Group(id, name, description, "owner", new Date(0));
+    }
+
+    private static List<String> ids(String... ids) {
+        List<String> list = new ArrayList<>();
+        for (String id : ids) list.add(id);
+        return list;
+    }
+
+    private static List<String> ids(List<Group> groups) {
+        List<String> list = new ArrayList<>();
+        for (Group group : groups) list.add(group.getGroupId());
+        return list;
+    }
+}
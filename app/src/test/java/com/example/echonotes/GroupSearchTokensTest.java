@@ -0,0 +1,44 @@
+package com.example.echonotes;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GroupSearchTokensTest {
+
+    @Test
+    public void tokensArePrefixesOfEveryWordLowercased() {
+        List<String> tokens = GroupSearchTokens.forGroup("Book Club", "Sci-fi");
+
+        assertEquals(Arrays.asList("b", "bo", "boo", "book", "c", "cl", "clu", "club", "s", "sc", "sci", "f", "fi"),
+                tokens);
+    }
+
+    @Test
+    public void longWordsAreCutAndTheTokenCountIsCapped() {
+        List<String> tokens = GroupSearchTokens.forGroup("Supercalifragilistic", null);
+        assertEquals(GroupSearchTokens.MAX_PREFIX, tokens.size());
+        assertEquals("supercalifragil", tokens.get(tokens.size() - 1));
+
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 1000; i++) description.append("word").append(i).append(' ');
+        assertEquals(GroupSearchTokens.MAX_TOKENS, GroupSearchTokens.forGroup("Name", description.toString()).size());
+    }
+
+    @Test
+    public void queriesTheLongestWordAndMatchesEveryWord() {
+        assertEquals("study", GroupSearchTokens.queryToken("Bio  STUDY"));
+        assertEquals("supercalifragil", GroupSearchTokens.queryToken("supercalifragilistic"));
+        assertNull(GroupSearchTokens.queryToken(" - "));
+
+        Group group = new Group("1", "Biology Study", "Cells and genetics", "owner", new Date(0));
+        assertTrue(GroupSearchTokens.matches(group, "bio stu"));
+        assertTrue(GroupSearchTokens.matches(group, "GEN"));
+        assertFalse(GroupSearchTokens.matches(group, "bio chem"));
+        assertFalse(GroupSearchTokens.matches(group, "ology"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.echonotes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LevelMeterTest {
+
+    @Test
+    public void keepsTheMostRecentLevelsOldestFirst() {
+        LevelMeter meter = new LevelMeter(3);
+        meter.onStart(16_000);
+
+        for (short amplitude : new short[]{0, 1_000, 4_000, 16_000, 32_000}) {
+            meter.onPcm(square(amplitude), 320, 0);
+        }
+
+        float[] levels = new float[3];
+        assertEquals(3, meter.copyLevels(levels));
+        assertEquals(-18.3f, levels[0], 0.1f);
+        assertEquals(-6.2f, levels[1], 0.1f);
+        assertEquals(-0.2f, levels[2], 0.1f);
+    }
+
+    @Test
+    public void clampsSilenceToTheFloor() {
+        LevelMeter meter = new LevelMeter(4);
+        meter.onStart(16_000);
+        meter.onPcm(new short[320], 320, 0);
+
+        float[] levels = new float[4];
+        assertEquals(1, meter.copyLevels(levels));
+        assertEquals(LevelMeter.FLOOR_DB, levels[0], 0f);
+    }
+
+    private static short[] square(short amplitude) {
+        short[] samples = new short[320];
+        for (int i = 0; i < samples.length; i++) samples[i] = (short) (i % 2 == 0 ? amplitude : -amplitude);
+        return samples;
+    }
+}
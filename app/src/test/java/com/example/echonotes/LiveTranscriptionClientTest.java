@@ -0,0 +1,115 @@
+package com.example.echonotes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LiveTranscriptionClientTest {
+
+    private LiveTranscriptionStandInServer server;
+    private final Map<Integer, String> utterances = new ConcurrentHashMap<>();
+    private final CountDownLatch finalUtterances = new CountDownLatch(3);
+
+    private final LiveTranscriptionClient.Listener listener = new LiveTranscriptionClient.Listener() {
+        @Override
+        public void onUtterance(int index, Utterance utterance, boolean isFinal) {
+            utterances.put(index, utterance.getText());
+            if (isFinal) finalUtterances.countDown();
+        }
+
+        @Override
+        public void onConnectionChanged(boolean connected) {
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LiveTranscriptionStandInServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void streamsFramesAndReceivesUtterances() throws Exception {
+        LiveTranscriptionClient client = new LiveTranscriptionClient(server.liveUrl(), "s1", 16_000, listener);
+        client.start();
+        appendFrames(client, 0, 30);
+        client.finish();
+
+        assertTrue(finalUtterances.await(5, TimeUnit.SECONDS));
+        assertFrames(30);
+        assertEquals("utterance 0", utterances.get(0));
+        assertEquals("utterance 2", utterances.get(2));
+        waitUntilEnded();
+    }
+
+    @Test
+    public void resumesAtTheServersFrameAfterADroppedConnection() throws Exception {
+        server.dropAfterFrames(12);
+        LiveTranscriptionClient client = new LiveTranscriptionClient(server.liveUrl(), "s2", 16_000, listener);
+        client.start();
+        appendFrames(client, 0, 20);
+        Thread.sleep(200);
+        appendFrames(client, 20, 10);
+        client.finish();
+
+        assertTrue(finalUtterances.await(10, TimeUnit.SECONDS));
+        assertFrames(30);
+        assertEquals(2, server.connections());
+        waitUntilEnded();
+    }
+
+    @Test
+    public void framesAreSentWithAnAdtsHeader() throws Exception {
+        LiveTranscriptionClient client = new LiveTranscriptionClient(server.liveUrl(), "s3", 16_000, listener);
+        client.start();
+        appendFrames(client, 0, 1);
+        client.finish();
+        waitUntilEnded();
+
+        byte[] frame = server.frames().get(0);
+        assertEquals(7 + 100, frame.length);
+        assertEquals((byte) 0xFF, frame[0]);
+        assertEquals((byte) 0xF1, frame[1]);
+        // AAC LC, 16 kHz (index 8), mono.
+        assertEquals(0x60, frame[2] & 0xFC);
+        assertEquals(107, ((frame[3] & 0x03) << 11) | ((frame[4] & 0xFF) << 3) | ((frame[5] & 0xFF) >> 5));
+    }
+
+    /** Appends frames of 100 bytes whose first byte is their index. */
+    private static void appendFrames(LiveTranscriptionClient client, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            byte[] payload = new byte[100];
+            payload[0] = (byte) i;
+            client.append(ByteBuffer.wrap(payload));
+        }
+    }
+
+    private void assertFrames(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (server.frames().size() < count && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        List<byte[]> frames = server.frames();
+        assertEquals(count, frames.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals((byte) i, frames.get(i)[7]);
+        }
+    }
+
+    private void waitUntilEnded() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!server.ended() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(server.ended());
+    }
+}
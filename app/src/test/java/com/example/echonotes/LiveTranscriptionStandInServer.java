@@ -0,0 +1,188 @@
+package com.example.echonotes;
+
+import org.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the live transcription WebSocket. It keeps the frames it has received in
+ * order, answers {@code start} with the next frame it needs, and echoes a fake utterance for every
+ * {@link #FRAMES_PER_UTTERANCE} frames: first as a partial, then final. It can drop a connection
+ * after a given number of frames to exercise resuming.
+ */
+class LiveTranscriptionStandInServer {
+
+    static final int FRAMES_PER_UTTERANCE = 10;
+
+    private final ServerSocket serverSocket;
+    private final List<byte[]> frames = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile int dropAfterFrames = -1;
+    private volatile boolean ended;
+
+    LiveTranscriptionStandInServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    new Thread(() -> serve(socket)).start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String liveUrl() {
+        return "ws://127.0.0.1:" + serverSocket.getLocalPort() + "/live";
+    }
+
+    /** Closes the connection without warning once this many frames have arrived in total. */
+    void dropAfterFrames(int count) {
+        dropAfterFrames = count;
+    }
+
+    List<byte[]> frames() {
+        synchronized (frames) {
+            return new ArrayList<>(frames);
+        }
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    boolean ended() {
+        return ended;
+    }
+
+    void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    private void serve(Socket socket) {
+        connections.incrementAndGet();
+        try (Socket s = socket) {
+            InputStream rawIn = s.getInputStream();
+            OutputStream out = s.getOutputStream();
+            if (!handshake(rawIn, out)) return;
+            DataInputStream in = new DataInputStream(rawIn);
+
+            while (true) {
+                int first = in.readUnsignedByte();
+                int second = in.readUnsignedByte();
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) length = in.readUnsignedShort();
+                else if (length == 127) length = in.readLong();
+                byte[] mask = new byte[4];
+                in.readFully(mask);
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+                for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+
+                if (opcode == 0x8) {
+                    send(out, 0x8, new byte[0]);
+                    return;
+                } else if (opcode == 0x1) {
+                    JSONObject message = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                    if ("start".equals(message.getString("type"))) {
+                        sendText(out, new JSONObject().put("type", "ready").put("next_frame", frames.size()));
+                    } else if ("end".equals(message.getString("type"))) {
+                        ended = true;
+                        send(out, 0x8, new byte[]{0x03, (byte) 0xE8});
+                        return;
+                    }
+                } else if (opcode == 0x2) {
+                    long index = 0;
+                    for (int i = 0; i < 8; i++) index = (index << 8) | (payload[i] & 0xFF);
+                    // Only the next frame in order is kept; anything else is a resend it already has.
+                    if (index != frames.size()) continue;
+                    byte[] frame = new byte[payload.length - 8];
+                    System.arraycopy(payload, 8, frame, 0, frame.length);
+                    frames.add(frame);
+
+                    int count = frames.size();
+                    if (count % FRAMES_PER_UTTERANCE == FRAMES_PER_UTTERANCE / 2) {
+                        sendUtterance(out, count / FRAMES_PER_UTTERANCE, false);
+                    } else if (count % FRAMES_PER_UTTERANCE == 0) {
+                        sendUtterance(out, count / FRAMES_PER_UTTERANCE - 1, true);
+                    }
+                    if (count == dropAfterFrames) {
+                        dropAfterFrames = -1;
+                        return;
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+            // The client went away.
+        }
+    }
+
+    private static boolean handshake(InputStream in, OutputStream out) throws IOException {
+        String key = null;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            if (line.toLowerCase().startsWith("sec-websocket-key:")) key = line.substring(18).trim();
+        }
+        if (key == null) return false;
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + WebSocketConnection.acceptFor(key) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return true;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) throw new IOException("closed");
+            if (b != '\r') line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    private static void sendUtterance(OutputStream out, int index, boolean isFinal) throws Exception {
+        sendText(out, new JSONObject()
+                .put("type", "utterance")
+                .put("index", index)
+                .put("speaker", index % 2 == 0 ? "A" : "B")
+                .put("text", (isFinal ? "utterance " : "utter") + index)
+                .put("start", index * 1000L)
+                .put("end", index * 1000L + 900)
+                .put("final", isFinal));
+    }
+
+    private static void sendText(OutputStream out, JSONObject json) throws IOException {
+        send(out, 0x1, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static synchronized void send(OutputStream out, int opcode, byte[] payload) throws IOException {
+        out.write(0x80 | opcode);
+        if (payload.length < 126) {
+            out.write(payload.length);
+        } else {
+            out.write(126);
+            out.write(payload.length >> 8);
+            out.write(payload.length & 0xFF);
+        }
+        out.write(payload);
+        out.flush();
+    }
+}
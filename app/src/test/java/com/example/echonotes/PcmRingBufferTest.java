@@ -0,0 +1,92 @@
+package com.example.echonotes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void framesComeOutInOrderWithTheirPositions() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+
+        for (int frame = 0; frame < 3; frame++) {
+            short[] slot = ring.writeSlot();
+            slot[0] = (short) frame;
+            assertTrue(ring.publish(8, frame * 8L));
+        }
+
+        for (int frame = 0; frame < 3; frame++) {
+            assertFalse(ring.isEmpty());
+            assertEquals(frame, ring.readSlot()[0]);
+            assertEquals(8, ring.readCount());
+            assertEquals(frame * 8L, ring.readPosition());
+            ring.release();
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void dropsNewFramesInsteadOfOverwritingUnreadOnes() {
+        PcmRingBuffer ring = new PcmRingBuffer(2, 4);
+
+        for (int frame = 0; frame < 3; frame++) {
+            ring.writeSlot()[0] = (short) frame;
+            ring.publish(4, frame * 4L);
+        }
+
+        assertEquals(1, ring.dropped());
+        assertEquals(0, ring.readSlot()[0]);
+        ring.release();
+        assertEquals(1, ring.readSlot()[0]);
+        ring.release();
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void reusesTheSameArrays() {
+        PcmRingBuffer ring = new PcmRingBuffer(2, 4);
+
+        short[] first = ring.writeSlot();
+        ring.publish(4, 0);
+        ring.release();
+        ring.writeSlot();
+        ring.publish(4, 4);
+        ring.release();
+
+        assertSame(first, ring.writeSlot());
+    }
+
+    @Test
+    public void handsEveryFrameAcrossThreads() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8, 16);
+        int frames = 20_000;
+        long[] sum = new long[1];
+
+        Thread reader = new Thread(() -> {
+            int received = 0;
+            while (received < frames) {
+                if (!ring.await(1_000_000)) continue;
+                sum[0] += ring.readSlot()[0];
+                ring.release();
+                received++;
+            }
+        });
+        reader.start();
+
+        int published = 0;
+        while (published < frames) {
+            short[] slot = ring.writeSlot();
+            slot[0] = (short) (published % 100);
+            if (ring.publish(16, published * 16L)) {
+                published++;
+            }
+        }
+        reader.join(10_000);
+
+        assertFalse(reader.isAlive());
+        long expected = 0;
+        for (int i = 0; i < frames; i++) expected += i % 100;
+        assertEquals(expected, sum[0]);
+    }
+}
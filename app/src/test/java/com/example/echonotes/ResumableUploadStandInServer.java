@@ -0,0 +1,165 @@
+package com.example.echonotes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the upload session endpoints described in {@link ResumableUploader}.
+ * It can be told to start rejecting chunks, to simulate a connection that drops partway.
+ */
+class ResumableUploadStandInServer {
+
+    static class Session {
+        final long length;
+        final JSONObject metadata;
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        Session(long length, JSONObject metadata) {
+            this.length = length;
+            this.metadata = metadata;
+        }
+    }
+
+    private final HttpServer server;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicInteger chunksAccepted = new AtomicInteger();
+    private volatile int failAfterChunks = Integer.MAX_VALUE;
+
+    ResumableUploadStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload/sessions", this::handle);
+        server.start();
+    }
+
+    String sessionsUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/upload/sessions";
+    }
+
+    /** Every chunk after the next {@code chunks} accepted ones fails with 503. */
+    void failAfterChunks(int chunks) {
+        failAfterChunks = chunksAccepted.get() + chunks;
+    }
+
+    void recover() {
+        failAfterChunks = Integer.MAX_VALUE;
+    }
+
+    long bytesReceived() {
+        return bytesReceived.get();
+    }
+
+    Session onlySession() {
+        return sessions.values().iterator().next();
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String uploadId = path.substring("/upload/sessions".length()).replace("/", "");
+        byte[] body = readAll(exchange.getRequestBody());
+
+        try {
+            switch (exchange.getRequestMethod()) {
+                case "POST": {
+                    JSONObject request = new JSONObject(new String(body, StandardCharsets.UTF_8));
+                    String id = "u" + nextId.incrementAndGet();
+                    sessions.put(id, new Session(request.getLong("length"), request.getJSONObject("metadata")));
+                    respond(exchange, 201, new JSONObject().put("upload_id", id));
+                    break;
+                }
+                case "HEAD": {
+                    Session session = sessions.get(uploadId);
+                    if (session == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        exchange.getResponseHeaders().set("Upload-Offset", String.valueOf(session.data.size()));
+                        exchange.sendResponseHeaders(200, -1);
+                    }
+                    break;
+                }
+                case "PUT": {
+                    bytesReceived.addAndGet(body.length);
+                    Session session = sessions.get(uploadId);
+                    if (session == null) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else if (body.length > 0 && chunksAccepted.get() >= failAfterChunks) {
+                        exchange.sendResponseHeaders(503, -1);
+                    } else {
+                        putChunk(exchange, session, body);
+                    }
+                    break;
+                }
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+            }
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void putChunk(HttpExchange exchange, Session session, byte[] body) throws Exception {
+        String range = exchange.getRequestHeaders().getFirst("Content-Range");
+        if (body.length > 0) {
+            long start = Long.parseLong(range.substring("bytes ".length(), range.indexOf('-')));
+            if (start != session.data.size()) {
+                exchange.getResponseHeaders().set("Upload-Offset", String.valueOf(session.data.size()));
+                exchange.sendResponseHeaders(409, -1);
+                return;
+            }
+            session.data.write(body);
+            chunksAccepted.incrementAndGet();
+        }
+
+        boolean complete = session.data.size() == session.length;
+        JSONObject response = new JSONObject()
+                .put("offset", session.data.size())
+                .put("complete", complete);
+        if (complete && session.metadata.optBoolean("is_last", true)) {
+            response.put("client_id", "client-" + session.metadata.optString("session_id", "test"));
+        }
+        respond(exchange, 200, response);
+    }
+
+    private static void respond(HttpExchange exchange, int code, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.echonotes;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ResumableUploaderTest {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ResumableUploadStandInServer server;
+    private UploadCheckpointStore checkpointStore;
+    private File audioFile;
+    private byte[] audioBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ResumableUploadStandInServer();
+        checkpointStore = new UploadCheckpointStore(temp.newFolder("checkpoints"));
+
+        audioBytes = new byte[10 * CHUNK_SIZE + 123];
+        new Random(42).nextBytes(audioBytes);
+        audioFile = temp.newFile("audio_test_000.3gp");
+        try (FileOutputStream out = new FileOutputStream(audioFile)) {
+            out.write(audioBytes);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void uploadsWholeFileInChunks() throws Exception {
+        JSONObject response = newUploader().upload(audioFile, "audio/3gpp", metadata(), null);
+
+        assertTrue(response.getBoolean("complete"));
+        assertEquals("client-s1", response.getString("client_id"));
+        assertArrayEquals(audioBytes, server.onlySession().data.toByteArray());
+        assertEquals(audioBytes.length, server.bytesReceived());
+        assertNull(checkpointStore.load(audioFile));
+    }
+
+    @Test
+    public void resumesFromLastAcknowledgedOffsetAfterDrop() throws Exception {
+        server.failAfterChunks(4);
+        try {
+            newUploader().upload(audioFile, "audio/3gpp", metadata(), null);
+            fail("Upload should fail while the server rejects chunks");
+        } catch (IOException expected) {
+        }
+
+        UploadCheckpointStore.Checkpoint checkpoint = checkpointStore.load(audioFile);
+        assertNotNull(checkpoint);
+        assertEquals(4L * CHUNK_SIZE, checkpoint.offset);
+
+        // A fresh uploader stands in for the app coming back after the connection dropped.
+        server.recover();
+        JSONObject response = newUploader().upload(audioFile, "audio/3gpp", metadata(), null);
+
+        assertEquals("client-s1", response.getString("client_id"));
+        assertEquals(1, server.sessionCount());
+        assertArrayEquals(audioBytes, server.onlySession().data.toByteArray());
+        // Only the single rejected chunk was sent twice.
+        assertEquals(audioBytes.length + CHUNK_SIZE, server.bytesReceived());
+    }
+
+    @Test
+    public void startsNewSessionWhenFileChanged() throws Exception {
+        server.failAfterChunks(2);
+        try {
+            newUploader().upload(audioFile, "audio/3gpp", metadata(), null);
+            fail("Upload should fail while the server rejects chunks");
+        } catch (IOException expected) {
+        }
+
+        try (FileOutputStream out = new FileOutputStream(audioFile, true)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+        server.recover();
+        newUploader().upload(audioFile, "audio/3gpp", metadata(), null);
+
+        assertEquals(2, server.sessionCount());
+    }
+
+    private ResumableUploader newUploader() {
+        return new ResumableUploader(server.sessionsUrl(), checkpointStore, CHUNK_SIZE, 0);
+    }
+
+    private static JSONObject metadata() throws Exception {
+        return new JSONObject()
+                .put("session_id", "s1")
+                .put("segment_index", 0)
+                .put("is_last", true);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.echonotes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentIndexTest {
+
+    private File dir;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("segment-index").toFile();
+        indexFile = new File(dir, "20250101_120000" + SegmentIndex.SUFFIX);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void reopenedIndexHasEverySegmentWithOffsets() throws IOException {
+        try (SegmentIndex index = SegmentIndex.create(indexFile, "SPEECH_AAC", true, dir)) {
+            index.append(0, 60_000, 1_000, 11);
+            index.append(1, 60_000, 1_200, 22);
+            index.append(2, 15_000, 300, 33);
+        }
+
+        try (SegmentIndex index = SegmentIndex.open(indexFile)) {
+            assertEquals("20250101_120000", index.getSessionId());
+            assertEquals("SPEECH_AAC", index.getProfileName());
+            assertTrue(index.isTrimSilence());
+            assertEquals(dir.getAbsolutePath(), index.getOutputDir().getAbsolutePath());
+            assertFalse(index.isEnded());
+
+            List<SegmentIndex.Entry> entries = index.getEntries();
+            assertEquals(3, entries.size());
+            assertEquals(120_000, entries.get(2).offsetMs);
+            assertEquals(15_000, entries.get(2).durationMs);
+            assertEquals(300, entries.get(2).length);
+            assertEquals(33, entries.get(2).crc);
+        }
+    }
+
+    @Test
+    public void remembersThatTheSessionEnded() throws IOException {
+        try (SegmentIndex index = SegmentIndex.create(indexFile, "LEGACY_AMR", false, dir)) {
+            index.append(0, 60_000, 1_000, 11);
+            index.markEnded();
+        }
+
+        try (SegmentIndex index = SegmentIndex.open(indexFile)) {
+            assertTrue(index.isEnded());
+            assertEquals(1, index.getEntries().size());
+        }
+    }
+
+    @Test
+    public void tornRecordEndsTheLog() throws IOException {
+        try (SegmentIndex index = SegmentIndex.create(indexFile, "SPEECH_AAC", false, dir)) {
+            index.append(0, 60_000, 1_000, 11);
+            index.append(1, 60_000, 1_000, 22);
+        }
+        // Corrupt the second record's duration, as a write cut short by a crash would.
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            raf.seek(1024 + 40 + 16);
+            raf.writeLong(5);
+        }
+
+        try (SegmentIndex index = SegmentIndex.open(indexFile)) {
+            assertEquals(1, index.getEntries().size());
+            // Appending after recovery overwrites the torn record.
+            index.append(1, 60_000, 1_000, 22);
+        }
+        try (SegmentIndex index = SegmentIndex.open(indexFile)) {
+            assertEquals(2, index.getEntries().size());
+        }
+    }
+
+    @Test
+    public void growsPastItsFirstMapping() throws IOException {
+        try (SegmentIndex index = SegmentIndex.create(indexFile, "SPEECH_AAC", false, dir)) {
+            for (int i = 0; i < 600; i++) index.append(i, 1_000, 10, i);
+        }
+
+        try (SegmentIndex index = SegmentIndex.open(indexFile)) {
+            assertEquals(600, index.getEntries().size());
+            assertEquals(599_000, index.getEntries().get(599).offsetMs);
+        }
+    }
+
+    @Test
+    public void intactEntriesStopAtAMissingOrShortSegment() throws IOException {
+        File[] segments = {segment(0, 100), segment(1, 100), segment(2, 100)};
+        try (SegmentIndex index = SegmentIndex.create(indexFile, "SPEECH_AAC", false, dir)) {
+            for (int i = 0; i < segments.length; i++) {
+                index.append(i, 1_000, segments[i].length(), SegmentIndex.crc32(segments[i]));
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(segments[1], "rw")) {
+                raf.setLength(50);
+            }
+
+            assertEquals(1, index.intactEntries(i -> segments[i]).size());
+        }
+    }
+
+    @Test
+    public void intactEntriesDropTheLastOneIfItsContentChanged() throws IOException {
+        File[] segments = {segment(0, 100), segment(1, 100)};
+        try (SegmentIndex index = SegmentIndex.create(indexFile, "SPEECH_AAC", false, dir)) {
+            for (int i = 0; i < segments.length; i++) {
+                index.append(i, 1_000, segments[i].length(), SegmentIndex.crc32(segments[i]));
+            }
+            assertEquals(2, index.intactEntries(i -> segments[i]).size());
+
+            try (RandomAccessFile raf = new RandomAccessFile(segments[1], "rw")) {
+                raf.seek(10);
+                raf.write(1);
+            }
+
+            assertEquals(1, index.intactEntries(i -> segments[i]).size());
+        }
+    }
+
+    private File segment(int index, int length) throws IOException {
+        File segment = new File(dir, "audio_" + index + ".m4a");
+        try (FileOutputStream out = new FileOutputStream(segment)) {
+            out.write(new byte[length]);
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.echonotes;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TranscriptClientTest {
+
+    private TranscriptStandInServer server;
+    private TranscriptClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TranscriptStandInServer();
+        client = new TranscriptClient(server.transcriptUrl());
+        server.addJob("job-1");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void repeatedPollsAreAnsweredWithNotModified() throws Exception {
+        TranscriptResult first = client.fetch("job-1");
+        TranscriptResult second = client.fetch("job-1");
+        TranscriptResult third = client.fetch("job-1");
+
+        assertFalse(first.isNotModified());
+        assertTrue(second.isNotModified());
+        assertTrue(third.isNotModified());
+        assertEquals(TranscriptResult.STATUS_PROCESSING, third.getStatus());
+        assertFalse(third.isCompleted());
+        assertEquals(2, server.notModifiedResponses());
+    }
+
+    @Test
+    public void fetchesFullBodyOnceStatusChanges() throws Exception {
+        client.fetch("job-1");
+        server.complete("job-1", new JSONArray()
+                .put(new JSONObject().put("speaker", "Speaker A").put("text", "Hello"))
+                .put(new JSONObject().put("text", "Hi").put("start", 1499.6).put("end", 2000.4)), "done");
+
+        TranscriptResult result = client.fetch("job-1");
+
+        assertFalse(result.isNotModified());
+        assertTrue(result.isCompleted());
+        assertEquals("done", result.getSummary());
+        assertEquals(2, result.getTranscript().size());
+        assertEquals("Speaker A", result.getTranscript().get(0).getSpeaker());
+        assertEquals("Hello", result.getTranscript().get(0).getText());
+        assertEquals(-1, result.getTranscript().get(0).getStartMs());
+        assertEquals("A", result.getTranscript().get(1).getSpeaker());
+        assertEquals(1500, result.getTranscript().get(1).getStartMs());
+        assertEquals(2000, result.getTranscript().get(1).getEndMs());
+        assertEquals(0, server.notModifiedResponses());
+    }
+
+    @Test
+    public void batchStatusCoversEveryKnownJob() throws Exception {
+        TranscriptClient batchClient = new TranscriptClient(server.transcriptUrl(), server.statusUrl());
+        server.addJob("job-2");
+        server.complete("job-2", new JSONArray(), "done");
+
+        Map<String, String> statuses = batchClient.fetchStatuses(Arrays.asList("job-1", "job-2", "unknown"));
+
+        assertEquals(TranscriptResult.STATUS_PROCESSING, statuses.get("job-1"));
+        assertEquals(TranscriptResult.STATUS_COMPLETED, statuses.get("job-2"));
+        assertFalse(statuses.containsKey("unknown"));
+        assertEquals(1, server.batchRequests());
+    }
+
+    @Test
+    public void forgottenJobIsFetchedUnconditionally() throws Exception {
+        client.fetch("job-1");
+        client.forget("job-1");
+
+        assertFalse(client.fetch("job-1").isNotModified());
+        assertEquals(0, server.notModifiedResponses());
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.echonotes;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TranscriptPollerTest {
+
+    private TranscriptStandInServer server;
+    private TranscriptClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TranscriptStandInServer();
+        client = new TranscriptClient(server.transcriptUrl());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void completesFromPushWithoutPolling() throws Exception {
+        // Polls would be a minute apart, so only the push channel can finish in time.
+        TranscriptPoller poller = new TranscriptPoller(client, true, 60_000, 60_000, 600_000);
+        RecordingListener listener = new RecordingListener();
+        server.addJob("job-1");
+
+        poller.poll("job-1", listener);
+        awaitStreams(1);
+        server.complete("job-1", transcript(), "short summary");
+
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals("short summary", listener.result.get().getSummary());
+        // The single request after the push is the one that fetches the finished transcript.
+        assertEquals(1, server.pollRequests());
+    }
+
+    @Test
+    public void fallsBackToPollingWhenChannelDrops() throws Exception {
+        TranscriptPoller poller = new TranscriptPoller(client, true, 50, 200, 600_000);
+        RecordingListener listener = new RecordingListener();
+        server.addJob("job-2");
+
+        poller.poll("job-2", listener);
+        awaitStreams(1);
+        server.dropStreams();
+        awaitPolls(2);
+        server.complete("job-2", transcript(), "after drop");
+
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals("after drop", listener.result.get().getSummary());
+        assertEquals(1, server.streamRequests());
+    }
+
+    @Test
+    public void pollsWhenServerHasNoPushChannel() throws Exception {
+        server.setPushEnabled(false);
+        TranscriptPoller poller = new TranscriptPoller(client, true, 50, 200, 600_000);
+        RecordingListener listener = new RecordingListener();
+        server.addJob("job-3");
+
+        poller.poll("job-3", listener);
+        awaitPolls(2);
+        server.complete("job-3", transcript(), "polled");
+
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals("polled", listener.result.get().getSummary());
+    }
+
+    @Test
+    public void watchesEachClientIdOnce() throws Exception {
+        TranscriptPoller poller = new TranscriptPoller(client, true, 60_000, 60_000, 600_000);
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        server.addJob("job-4");
+
+        poller.poll("job-4", first);
+        poller.poll("job-4", second);
+        awaitStreams(1);
+        server.complete("job-4", transcript(), "once");
+
+        assertTrue(second.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, server.streamRequests());
+        assertEquals(1, first.completed.getCount());
+    }
+
+    @Test
+    public void pollsEveryJobWithOneBatchRequestPerTick() throws Exception {
+        TranscriptClient batchClient = new TranscriptClient(server.transcriptUrl(), server.statusUrl());
+        TranscriptPoller poller = new TranscriptPoller(batchClient, false, 50, 100, 600_000);
+        RecordingListener[] listeners = new RecordingListener[5];
+        for (int i = 0; i < listeners.length; i++) {
+            server.addJob("batch-" + i);
+            listeners[i] = new RecordingListener();
+            poller.poll("batch-" + i, listeners[i]);
+        }
+
+        awaitBatches(3);
+        // Each job is fetched once on its own when it starts; after that only the batch asks.
+        assertEquals(listeners.length, server.pollRequests());
+
+        for (int i = 0; i < listeners.length; i++) {
+            server.complete("batch-" + i, transcript(), "summary " + i);
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            assertTrue(listeners[i].completed.await(5, TimeUnit.SECONDS));
+            assertEquals("summary " + i, listeners[i].result.get().getSummary());
+        }
+        assertEquals(2 * listeners.length, server.pollRequests());
+    }
+
+    @Test
+    public void pollsEachJobWhenServerHasNoBatchEndpoint() throws Exception {
+        server.setPushEnabled(false);
+        server.setBatchEnabled(false);
+        TranscriptClient batchClient = new TranscriptClient(server.transcriptUrl(), server.statusUrl());
+        TranscriptPoller poller = new TranscriptPoller(batchClient, true, 50, 100, 600_000);
+        RecordingListener listener = new RecordingListener();
+        server.addJob("job-5");
+
+        poller.poll("job-5", listener);
+        awaitPolls(3);
+        server.complete("job-5", transcript(), "unbatched");
+
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals("unbatched", listener.result.get().getSummary());
+        assertEquals(0, server.batchRequests());
+    }
+
+    @Test
+    public void reportsPartialTranscriptsFromBatchCounts() throws Exception {
+        TranscriptClient batchClient = new TranscriptClient(server.transcriptUrl(), server.statusUrl());
+        TranscriptPoller poller = new TranscriptPoller(batchClient, false, 50, 100, 600_000);
+        RecordingListener listener = new RecordingListener();
+        server.addJob("job-6");
+
+        poller.poll("job-6", listener);
+        server.addPartial("job-6", utterance("Speaker A", "Hello"));
+        assertEquals(1, listener.awaitPartial(1));
+        server.addPartial("job-6", utterance("Speaker B", "Hi there"));
+        assertEquals(2, listener.awaitPartial(2));
+        server.complete("job-6", transcript(), "done");
+
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.partialSizes.size());
+    }
+
+    @Test
+    public void reportsPartialTranscriptsFromPushEvents() throws Exception {
+        TranscriptPoller poller = new TranscriptPoller(client, true, 60_000, 60_000, 600_000);
+        RecordingListener listener = new RecordingListener();
+        server.addJob("job-7");
+
+        poller.poll("job-7", listener);
+        awaitStreams(1);
+        server.addPartial("job-7", utterance("Speaker A", "Hello"));
+
+        assertEquals(1, listener.awaitPartial(1));
+        assertEquals("Hello", listener.partial.get().getTranscript().get(0).getText());
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.batchRequests() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitStreams(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.streamRequests() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Give the stand-in a moment to send the initial status event.
+        Thread.sleep(100);
+    }
+
+    private void awaitPolls(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.pollRequests() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static JSONArray transcript() throws Exception {
+        return new JSONArray()
+                .put(new JSONObject().put("speaker", "Speaker A").put("text", "Hello"))
+                .put(new JSONObject().put("speaker", "Speaker B").put("text", "Hi there"));
+    }
+
+    private static JSONObject utterance(String speaker, String text) throws Exception {
+        return new JSONObject().put("speaker", speaker).put("text", text);
+    }
+
+    private static class RecordingListener implements TranscriptPoller.Listener {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<TranscriptResult> result = new AtomicReference<>();
+        final AtomicReference<TranscriptResult> partial = new AtomicReference<>();
+        final List<Integer> partialSizes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onPartial(TranscriptResult partialResult) {
+            partial.set(partialResult);
+            partialSizes.add(partialResult.getTranscript().size());
+        }
+
+        /** Waits until a partial of at least {@code size} utterances arrives, returning its size. */
+        int awaitPartial(int size) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                TranscriptResult latest = partial.get();
+                if (latest != null && latest.getTranscript().size() >= size) return latest.getTranscript().size();
+                Thread.sleep(10);
+            }
+            return -1;
+        }
+
+        @Override
+        public void onCompleted(TranscriptResult transcriptResult) {
+            result.set(transcriptResult);
+            completed.countDown();
+        }
+
+        @Override
+        public void onTimedOut() {
+        }
+    }
+}
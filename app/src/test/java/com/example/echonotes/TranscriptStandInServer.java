@@ -0,0 +1,252 @@
+package com.example.echonotes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for {@code GET /transcript/{client_id}}: plain JSON status for polls, with ETags
+ * and {@code 304 Not Modified}, and a Server-Sent Events channel for clients that ask for
+ * {@code text/event-stream}. {@code POST /transcripts/status} answers the status of many jobs at
+ * once. Utterances added while a job is processing are served as a partial transcript and counted
+ * in batch answers and push events.
+ */
+class TranscriptStandInServer {
+
+    static class Job {
+        volatile String status = TranscriptResult.STATUS_PROCESSING;
+        final JSONArray partial = new JSONArray();
+        volatile JSONArray transcript;
+        volatile String summary;
+    }
+
+    private final HttpServer server;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final AtomicInteger pollRequests = new AtomicInteger();
+    private final AtomicInteger streamRequests = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private volatile boolean pushEnabled = true;
+    private volatile boolean batchEnabled = true;
+    private int dropGeneration = 0;
+
+    TranscriptStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/transcript/", this::handle);
+        server.createContext("/transcripts/status", this::handleBatch);
+        server.start();
+    }
+
+    String transcriptUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/transcript/";
+    }
+
+    String statusUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/transcripts/status";
+    }
+
+    void addJob(String clientId) {
+        jobs.put(clientId, new Job());
+    }
+
+    void complete(String clientId, JSONArray transcript, String summary) {
+        Job job = jobs.get(clientId);
+        job.transcript = transcript;
+        job.summary = summary;
+        job.status = TranscriptResult.STATUS_COMPLETED;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    void addPartial(String clientId, JSONObject utterance) {
+        Job job = jobs.get(clientId);
+        synchronized (lock) {
+            synchronized (job.partial) {
+                job.partial.put(utterance);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    void setPushEnabled(boolean enabled) {
+        pushEnabled = enabled;
+    }
+
+    void setBatchEnabled(boolean enabled) {
+        batchEnabled = enabled;
+    }
+
+    /** Cuts every open event stream, as a flaky network would. */
+    void dropStreams() {
+        synchronized (lock) {
+            dropGeneration++;
+            lock.notifyAll();
+        }
+    }
+
+    int pollRequests() {
+        return pollRequests.get();
+    }
+
+    int streamRequests() {
+        return streamRequests.get();
+    }
+
+    int notModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    int batchRequests() {
+        return batchRequests.get();
+    }
+
+    void stop() {
+        dropStreams();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String clientId = exchange.getRequestURI().getPath().substring("/transcript/".length());
+        Job job = jobs.get(clientId);
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+
+        try {
+            if (job == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (pushEnabled && accept != null && accept.contains("text/event-stream")) {
+                streamRequests.incrementAndGet();
+                stream(exchange, job);
+            } else {
+                pollRequests.incrementAndGet();
+                String etag = "\"" + job.status + "-" + partialCount(job) + "\"";
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", etag);
+                    respond(exchange, statusDocument(job));
+                }
+            }
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try {
+            if (!batchEnabled || !"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            batchRequests.incrementAndGet();
+            String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            JSONArray clientIds = new JSONObject(body).getJSONArray("client_ids");
+
+            JSONObject statuses = new JSONObject();
+            JSONObject utterances = new JSONObject();
+            for (int i = 0; i < clientIds.length(); i++) {
+                Job job = jobs.get(clientIds.getString(i));
+                if (job == null) continue;
+                statuses.put(clientIds.getString(i), job.status);
+                if (partialCount(job) > 0) utterances.put(clientIds.getString(i), partialCount(job));
+            }
+            respond(exchange, new JSONObject().put("statuses", statuses).put("utterances", utterances));
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private void stream(HttpExchange exchange, Job job) throws Exception {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        // Current status first, so a job that finished before the client connected isn't missed.
+        int sentCount = partialCount(job);
+        sendEvent(out, job.status, sentCount);
+        while (true) {
+            int count;
+            synchronized (lock) {
+                int generation = dropGeneration;
+                while (!TranscriptResult.STATUS_COMPLETED.equals(job.status) && generation == dropGeneration
+                        && partialCount(job) == sentCount) {
+                    lock.wait();
+                }
+                if (generation != dropGeneration) return;
+                if (TranscriptResult.STATUS_COMPLETED.equals(job.status)) break;
+                count = partialCount(job);
+            }
+            sendEvent(out, TranscriptResult.STATUS_PROCESSING, count);
+            sentCount = count;
+        }
+        sendEvent(out, TranscriptResult.STATUS_COMPLETED, 0);
+    }
+
+    private static int partialCount(Job job) {
+        synchronized (job.partial) {
+            return job.partial.length();
+        }
+    }
+
+    private static void sendEvent(OutputStream out, String status, int utterances) throws Exception {
+        JSONObject data = new JSONObject().put("status", status);
+        if (utterances > 0) data.put("utterances", utterances);
+        String event = ": keep-alive\n"
+                + "event: status\n"
+                + "data: " + data + "\n\n";
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static JSONObject statusDocument(Job job) throws Exception {
+        JSONObject document = new JSONObject().put("status", job.status);
+        if (TranscriptResult.STATUS_COMPLETED.equals(job.status)) {
+            document.put("transcript", job.transcript);
+            document.put("summary", job.summary);
+        } else if (partialCount(job) > 0) {
+            synchronized (job.partial) {
+                document.put("transcript", new JSONArray(job.partial.toString()));
+            }
+        }
+        return document;
+    }
+
+    private static void respond(HttpExchange exchange, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}